@@ -0,0 +1,319 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.util.JsonGeneratorDelegate;
+import com.fasterxml.jackson.core.util.JsonParserDelegate;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.*;
+
+/**
+ * Runs the async calls of a Jackson5 within its {@link AsyncLimits}.
+ * The future of the call running on a thread is kept in a thread local, and the generators and parsers of the call
+ * check it between values, so a call whose future is cancelled, or otherwise completed, stops where it is.
+ */
+final class Async {
+    private static final ThreadLocal<CompletableFuture<?>> current = new ThreadLocal<>();
+
+    private final AsyncLimits limits;
+    private final Executor executor;
+    // the default pool, which is shut down when the limits are replaced
+    private final ExecutorService pool;
+    private final int max;
+    private final Semaphore admission;
+
+    Async(AsyncLimits limits, String name) {
+        this.limits = limits;
+        this.pool = limits.executor() == null
+                ? Workers.pool(name.isEmpty() ? "jackson5-async" : "jackson5-async-" + name, limits.maxConcurrency())
+                : null;
+        this.executor = pool == null ? limits.executor() : pool;
+        this.max = limits.maxConcurrency() + limits.maxQueued();
+        this.admission = new Semaphore(max);
+    }
+
+    AsyncLimits limits() {
+        return limits;
+    }
+
+    /**
+     * Let the admitted calls finish, and stop the default pool afterwards
+     */
+    void shutdown() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    /**
+     * Admit a call and run it on the executor
+     * @param call The work
+     * @return The future of the result, failed with {@link AsyncLimitExceeded} if the call was not admitted
+     */
+    <T> CompletableFuture<T> submit(Jackson5.Call<T, ? extends Exception> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            long timeout = limits.admissionTimeout().toNanos();
+            if (!(timeout > 0 ? admission.tryAcquire(timeout, TimeUnit.NANOSECONDS) : admission.tryAcquire())) {
+                future.completeExceptionally(new AsyncLimitExceeded("calls", max - admission.availablePermits() + 1L, max));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        try {
+            executor.execute(() -> run(future, call));
+        } catch (RejectedExecutionException e) {
+            admission.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private <T> void run(CompletableFuture<T> future, Jackson5.Call<T, ? extends Exception> call) {
+        try {
+            // cancelled while it was queued
+            if (future.isDone())
+                return;
+            current.set(future);
+            future.complete(call.call());
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            current.remove();
+            admission.release();
+        }
+    }
+
+    /**
+     * Stop the call running on this thread if its future is done, do nothing outside of an async call
+     * @throws Cancelled If the future is done
+     */
+    static void checkpoint() throws Cancelled {
+        checkpoint(current.get());
+    }
+
+    private static void checkpoint(CompletableFuture<?> future) throws Cancelled {
+        if (future != null && future.isDone())
+            throw new Cancelled();
+    }
+
+    /**
+     * @param gen A generator
+     * @return The generator, which checks the future of the async call running on this thread if there is one
+     */
+    static JsonGenerator cancellable(JsonGenerator gen) {
+        CompletableFuture<?> future = current.get();
+        return future == null ? gen : new CancellableGenerator(gen, future);
+    }
+
+    /**
+     * @param p A parser
+     * @return The parser, which checks the future of the async call running on this thread if there is one
+     */
+    static JsonParser cancellable(JsonParser p) {
+        CompletableFuture<?> future = current.get();
+        return future == null ? p : new CancellableParser(p, future);
+    }
+
+    /**
+     * Convert an object to a tree like {@link ObjectMapper#valueToTree(Object)}, which an async call can stop
+     */
+    static JsonNode tree(ObjectMapper mapper, Object o) throws JsonProcessingException {
+        if (current.get() == null || o == null)
+            return mapper.valueToTree(o);
+        TokenBuffer buffer = tokens(mapper, o);
+        try {
+            return mapper.readTree(buffer.asParser());
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a TokenBuffer does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serialize an object to the tokens {@link #tree(ObjectMapper, Object)} is built from, which an async call can stop
+     */
+    static TokenBuffer tokens(ObjectMapper mapper, Object o) throws JsonProcessingException {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        if (mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+            buffer = buffer.forceUseOfBigDecimal(true);
+        try {
+            mapper.writer().without(SerializationFeature.WRAP_ROOT_VALUE).writeValue(cancellable(buffer), o);
+            return buffer;
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a TokenBuffer does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parse a tree like {@link ObjectMapper#readTree(String)}, which an async call can stop
+     */
+    static JsonNode readTree(ObjectMapper mapper, String json) throws JsonProcessingException {
+        if (current.get() == null)
+            return mapper.readTree(json);
+        try (JsonParser p = cancellable(mapper.getFactory().createParser(json))) {
+            JsonNode node = mapper.readTree(p);
+            return node == null ? mapper.getNodeFactory().missingNode() : node;
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a String does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serialize like {@link ObjectWriter#writeValueAsString(Object)}, which an async call can stop
+     */
+    static String string(ObjectWriter writer, Object o) throws JsonProcessingException {
+        if (current.get() == null)
+            return writer.writeValueAsString(o);
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = cancellable(writer.getFactory().createGenerator(out))) {
+            writer.writeValue(gen, o);
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a StringWriter does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Deserialize like {@link ObjectReader#readValue(String)}, which an async call can stop
+     */
+    static <T> T read(ObjectReader reader, String json) throws IOException {
+        if (current.get() == null)
+            return reader.readValue(json);
+        try (JsonParser p = cancellable(reader.getFactory().createParser(json))) {
+            return reader.readValue(p);
+        }
+    }
+
+    /**
+     * Thrown within a call whose future is done, nobody sees it as the future already has its result
+     */
+    static class Cancelled extends JsonProcessingException {
+        Cancelled() {
+            super("async call cancelled");
+        }
+    }
+
+    /**
+     * Checks the future before each object, array and field
+     */
+    private static class CancellableGenerator extends JsonGeneratorDelegate {
+        private final CompletableFuture<?> future;
+
+        CancellableGenerator(JsonGenerator gen, CompletableFuture<?> future) {
+            super(gen, false);
+            this.future = future;
+        }
+
+        @Override
+        public void writeStartArray() throws IOException {
+            checkpoint(future);
+            super.writeStartArray();
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public void writeStartArray(int size) throws IOException {
+            checkpoint(future);
+            super.writeStartArray(size);
+        }
+
+        @Override
+        public void writeStartArray(Object forValue) throws IOException {
+            checkpoint(future);
+            super.writeStartArray(forValue);
+        }
+
+        @Override
+        public void writeStartArray(Object forValue, int size) throws IOException {
+            checkpoint(future);
+            super.writeStartArray(forValue, size);
+        }
+
+        @Override
+        public void writeStartObject() throws IOException {
+            checkpoint(future);
+            super.writeStartObject();
+        }
+
+        @Override
+        public void writeStartObject(Object forValue) throws IOException {
+            checkpoint(future);
+            super.writeStartObject(forValue);
+        }
+
+        @Override
+        public void writeStartObject(Object forValue, int size) throws IOException {
+            checkpoint(future);
+            super.writeStartObject(forValue, size);
+        }
+
+        @Override
+        public void writeFieldName(String name) throws IOException {
+            checkpoint(future);
+            super.writeFieldName(name);
+        }
+
+        @Override
+        public void writeFieldName(SerializableString name) throws IOException {
+            checkpoint(future);
+            super.writeFieldName(name);
+        }
+    }
+
+    /**
+     * Checks the future before each token
+     */
+    private static class CancellableParser extends JsonParserDelegate {
+        private final CompletableFuture<?> future;
+
+        CancellableParser(JsonParser p, CompletableFuture<?> future) {
+            super(p);
+            this.future = future;
+        }
+
+        @Override
+        public JsonToken nextToken() throws IOException {
+            checkpoint(future);
+            return super.nextToken();
+        }
+
+        @Override
+        public JsonToken nextValue() throws IOException {
+            checkpoint(future);
+            return super.nextValue();
+        }
+
+        @Override
+        public String nextFieldName() throws IOException {
+            checkpoint(future);
+            return super.nextFieldName();
+        }
+
+        @Override
+        public boolean nextFieldName(SerializableString name) throws IOException {
+            checkpoint(future);
+            return super.nextFieldName(name);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Fails the future of an async call which a Jackson5 did not admit, because of its {@link AsyncLimits}
+ */
+public class AsyncLimitExceeded extends JsonProcessingException {
+    private final String limit;
+    private final long value;
+    private final long max;
+
+    public AsyncLimitExceeded(String limit, long value, long max) {
+        super(String.format("async %s of %d exceeds the limit of %d", limit, value, max));
+        this.limit = limit;
+        this.value = value;
+        this.max = max;
+    }
+
+    /**
+     * @return The name of the exceeded limit: calls, which are running or queued
+     */
+    public String getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The number of calls in flight with this one
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return The configured limit
+     */
+    public long getMax() {
+        return max;
+    }
+}
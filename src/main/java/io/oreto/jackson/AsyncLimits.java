@@ -0,0 +1,85 @@
+package io.oreto.jackson;
+
+import java.time.Duration;
+import java.util.concurrent.Executor;
+
+/**
+ * Limits on the async calls of a Jackson5, such as {@link Jackson5#serializeAsync(Object, IFields)}.
+ * Calls run on a bounded executor, and are admitted only while fewer than maxConcurrency + maxQueued of them
+ * are in flight. Past that a call waits up to the admission timeout for room, then its future fails with
+ * {@link AsyncLimitExceeded}, which pushes back on the callers instead of queueing without end.
+ * <pre>
+ *     jackson5.async(AsyncLimits.defaults().maxConcurrency(4).maxQueued(100).admissionTimeout(Duration.ofMillis(50)));
+ * </pre>
+ */
+public class AsyncLimits {
+    /**
+     * @return As many workers as processors, and 64 queued calls per worker. Every Jackson5 starts with these.
+     */
+    public static AsyncLimits defaults() {
+        int parallelism = Workers.parallelism();
+        return new AsyncLimits()
+                .maxConcurrency(parallelism)
+                .maxQueued(parallelism * 64);
+    }
+
+    private int maxConcurrency = 1;
+    private int maxQueued;
+    private Duration admissionTimeout = Duration.ZERO;
+    private Executor executor;
+
+    private AsyncLimits() {}
+
+    /**
+     * @param maxConcurrency Number of workers of the default executor, which run calls at the same time
+     * @return This AsyncLimits
+     */
+    public AsyncLimits maxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * @param maxQueued Maximum number of admitted calls waiting for a worker
+     * @return This AsyncLimits
+     */
+    public AsyncLimits maxQueued(int maxQueued) {
+        this.maxQueued = maxQueued;
+        return this;
+    }
+
+    /**
+     * @param admissionTimeout How long a call waits for room when the executor is saturated, defaults to not at all
+     * @return This AsyncLimits
+     */
+    public AsyncLimits admissionTimeout(Duration admissionTimeout) {
+        this.admissionTimeout = admissionTimeout;
+        return this;
+    }
+
+    /**
+     * @param executor The executor which runs the calls, which should be bounded itself. Defaults to a pool of
+     *                 maxConcurrency workers, virtual threads where the runtime has them, which the Jackson5 owns.
+     * @return This AsyncLimits
+     */
+    public AsyncLimits executor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    int maxQueued() {
+        return maxQueued;
+    }
+
+    Duration admissionTimeout() {
+        return admissionTimeout;
+    }
+
+    Executor executor() {
+        return executor;
+    }
+}
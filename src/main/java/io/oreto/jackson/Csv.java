@@ -1,29 +1,50 @@
 package io.oreto.jackson;
 
+import com.fasterxml.jackson.core.Base64Variants;
+import com.fasterxml.jackson.core.JsonGenerationException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
-import static io.oreto.jackson.Util.IO;
-
 public class Csv<T> {
+    private static final CsvMapper csvMapper = MapperConfig.defaultConfig().configure(new CsvMapper());
+    // bounds each cache, past it plans and readers are built for every call
+    private static final int MAX_PLANS = 256;
+    private static final Map<Key, Plan> plans = new ConcurrentHashMap<>();
+    private static final Map<Key, ObjectReader> readers = new ConcurrentHashMap<>();
 
     private static List<Map<String, ?>> from(MappingIterator<Map<String, ?>> mappingIterator) {
         try {
-            return mappingIterator.readAll();
+            return Jackson5.get().measure(Jackson5Metrics.Operation.CSV_READ, mappingIterator::readAll);
         } catch(Exception e) {
             e.printStackTrace();
             return null;
@@ -38,13 +59,7 @@ public class Csv<T> {
     public static List<Map<String, ?>> from(String csv) {
         MappingIterator<Map<String, ?>> mappingIterator = null;
         try {
-            //s = s.replaceAll("[ \t]", "");
-            mappingIterator = new CsvMapper()
-                    .enable(CsvParser.Feature.ALLOW_COMMENTS)
-                    .enable(CsvParser.Feature.TRIM_SPACES).reader()
-                    .forType(Map.class)
-                    .with(CsvSchema.emptySchema().withHeader())
-                    .readValues(csv);
+            mappingIterator = reader(Map.class, Options.header()).readValues(csv);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -52,12 +67,635 @@ public class Csv<T> {
     }
 
     /**
-     * Convert CSV File to a List of Maps, in other words row objects
+     * Convert CSV File to a List of Maps, in other words row objects. The file may be gzip compressed.
      * @param csv The csv File
      * @return List of rows
+     * @throws UncheckedIOException If the csv cannot be read
      */
     public static List<Map<String, ?>> from(File csv) {
-        return from(IO.fileText(csv).orElse(Util.Str.EMPTY));
+        if (!csv.exists())
+            return from(Util.Str.EMPTY);
+        // the file is closed here as well as by the iterator, in case the csv fails before the iterator exists
+        try (InputStream in = new FileInputStream(csv);
+             MappingIterator<Map<String, ?>> rows = reader(Map.class, Options.header())
+                     .readValues(PipelinedGzipInputStream.decompressed(in))) {
+            return Jackson5.get().measure(Jackson5Metrics.Operation.CSV_READ, rows::readAll);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Convert CSV text to a List of Maps, keeping only the columns selected by the options
+     * @param csv The csv String
+     * @param options Options representing how the csv is structured and which columns to read
+     * @return List of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static List<Map<String, ?>> from(String csv, Options options) {
+        return from(new StringReader(csv), options);
+    }
+
+    /**
+     * Convert CSV File to a List of Maps, keeping only the columns selected by the options.
+     * The file may be gzip compressed.
+     * @param csv The csv File
+     * @param options Options representing how the csv is structured and which columns to read
+     * @return List of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static List<Map<String, ?>> from(File csv, Options options) {
+        if (!csv.exists())
+            return from(Util.Str.EMPTY, options);
+        // the file is closed here as well as by the stream, in case the csv fails before the stream exists
+        try (InputStream in = new FileInputStream(csv);
+             Reader reader = new InputStreamReader(PipelinedGzipInputStream.decompressed(in), StandardCharsets.UTF_8)) {
+            return from(reader, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Map<String, ?>> from(Reader reader, Options options) {
+        try (Stream<Map> rows = project(reader, Map.class, options)) {
+            return Jackson5.get().measure(Jackson5Metrics.Operation.CSV_READ
+                    , () -> rows.map(it -> (Map<String, ?>) it).collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Lazily read CSV rows, binding each row straight to the specified class.
+     * The stream holds the underlying reader open and should be closed, preferably with try-with-resources.
+     * @param reader The csv Reader
+     * @param tClass Class type of each row
+     * @param options Options representing how the csv is structured
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(Reader reader, Class<T> tClass, Options options) {
+        if (options.projected() || indexed(tClass, options))
+            return project(reader, tClass, options);
+        try {
+            return stream(reader(tClass, options).readValues(reader));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lazily read CSV rows, binding each row straight to the specified class.
+     * @param reader The csv Reader
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(Reader reader, Class<T> tClass) {
+        return stream(reader, tClass, Options.header());
+    }
+
+    /**
+     * Lazily read CSV rows, binding each row straight to the specified class.
+     * The stream holds the underlying InputStream open and should be closed, preferably with try-with-resources.
+     * Gzip input is recognized and inflated on a separate thread while the rows are parsed.
+     * @param inputStream The csv InputStream
+     * @param tClass Class type of each row
+     * @param options Options representing how the csv is structured
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(InputStream inputStream, Class<T> tClass, Options options) {
+        try {
+            inputStream = PipelinedGzipInputStream.decompressed(inputStream);
+            if (options.projected() || indexed(tClass, options))
+                return project(new InputStreamReader(inputStream, StandardCharsets.UTF_8), tClass, options);
+            return stream(reader(tClass, options).readValues(inputStream));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lazily read CSV rows, binding each row straight to the specified class.
+     * @param inputStream The csv InputStream
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(InputStream inputStream, Class<T> tClass) {
+        return stream(inputStream, tClass, Options.header());
+    }
+
+    /**
+     * Lazily read CSV rows from a file, binding each row straight to the specified class.
+     * The stream holds the file open and should be closed, preferably with try-with-resources.
+     * @param path Path to the csv file
+     * @param tClass Class type of each row
+     * @param options Options representing how the csv is structured
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(Path path, Class<T> tClass, Options options) {
+        try {
+            return stream(Files.newInputStream(path), tClass, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Lazily read CSV rows from a file, binding each row straight to the specified class.
+     * @param path Path to the csv file
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return Stream of rows
+     * @throws UncheckedIOException If the csv cannot be read
+     */
+    public static <T> Stream<T> stream(Path path, Class<T> tClass) {
+        return stream(path, tClass, Options.header());
+    }
+
+    private static <T> Stream<T> stream(MappingIterator<T> rows) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        rows.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Maps read without a header or a schema have their columns named by index, as the projection names them
+     * @param type The class of the rows
+     * @param options Options representing how the csv is structured
+     * @return Whether the columns are named by index
+     */
+    private static boolean indexed(Class<?> type, Options options) {
+        return !options.header && Objects.isNull(options.schema) && Map.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Read only the columns selected by the options. Skipped columns are stepped over by the tokenizer
+     * without creating values, and the kept columns are bound to the specified class.
+     */
+    private static <T> Stream<T> project(Reader reader, Class<T> tClass, Options options) {
+        Projection<T> projection;
+        try {
+            projection = new Projection<>(new CsvTokenizer(reader, !options.withoutQuote), tClass, options);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(projection, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        projection.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Name the columns of a csv, from the header record when there is one
+     * @param header The values of the header record, or null if there is no header
+     * @param options Options representing how the csv is structured
+     * @param width The number of columns
+     * @return The column names
+     */
+    static String[] names(List<String> header, Options options, int width) {
+        String[] names = new String[width];
+        for (int i = 0; i < width; i++) {
+            if (header != null && i < header.size())
+                names[i] = header.get(i);
+            else if (Objects.nonNull(options.schema) && i < options.schema.size())
+                names[i] = options.schema.columnName(i);
+            else
+                names[i] = String.valueOf(i);
+        }
+        return names;
+    }
+
+    /**
+     * Determine which columns are read
+     * @param names The column names
+     * @param options Options with the included or excluded columns
+     * @return Whether each column is kept
+     */
+    static boolean[] keep(String[] names, Options options) {
+        boolean[] keep = new boolean[names.length];
+        for (int i = 0; i < names.length; i++)
+            keep[i] = selected(names[i], options);
+        return keep;
+    }
+
+    /**
+     * Index the record offsets of a CSV file so any range of rows can be read without parsing the rows before it.
+     * A fresh index saved beside the file with {@link CsvIndex#save()} is loaded instead of scanning the file.
+     * @param path Path to the csv file
+     * @param options Options representing how the csv is structured
+     * @return The index of the file
+     * @throws IOException If the csv cannot be read
+     */
+    public static CsvIndex index(Path path, Options options) throws IOException {
+        return CsvIndex.of(path, options);
+    }
+
+    /**
+     * Index the record offsets of a CSV file so any range of rows can be read without parsing the rows before it.
+     * @param path Path to the csv file
+     * @return The index of the file
+     * @throws IOException If the csv cannot be read
+     */
+    public static CsvIndex index(Path path) throws IOException {
+        return index(path, Options.header());
+    }
+
+    /**
+     * Load a CSV file with a header into a columnar table, inferring the type of each column
+     * @param path Path to the csv file
+     * @return The table of columns
+     * @throws IOException If the csv cannot be read
+     */
+    public static CsvTable table(Path path) throws IOException {
+        return CsvTable.loader().load(path);
+    }
+
+    /**
+     * Read a CSV file on several threads, binding each row to the specified class.
+     * The file is split into equal byte ranges, which the workers align on record boundaries with a quote-aware scan,
+     * and the ranges are parsed concurrently using the header of the file.
+     * @param path Path to the csv file
+     * @param tClass Class type of each row
+     * @param options Options representing how the csv is structured
+     * @param parallelism Number of worker threads
+     * @param <T> Type of each row
+     * @return List of rows in file order
+     * @throws IOException If the csv cannot be read
+     */
+    public static <T> List<T> parallel(Path path, Class<T> tClass, Options options, int parallelism)
+            throws IOException {
+        List<T> rows = new ArrayList<>();
+        for (List<T> chunk : readChunks(path, tClass, options, parallelism, MappingIterator::readAll))
+            rows.addAll(chunk);
+        return rows;
+    }
+
+    /**
+     * Read a CSV file on all available processors, binding each row to the specified class.
+     * @param path Path to the csv file
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return List of rows in file order
+     * @throws IOException If the csv cannot be read
+     */
+    public static <T> List<T> parallel(Path path, Class<T> tClass) throws IOException {
+        return parallel(path, tClass, Options.header(), Workers.parallelism());
+    }
+
+    /**
+     * Read a CSV file on several threads, handing each row to the sink as soon as it is parsed.
+     * Rows arrive in no particular order and the sink is called concurrently, so it must be thread safe.
+     * @param path Path to the csv file
+     * @param tClass Class type of each row
+     * @param options Options representing how the csv is structured
+     * @param parallelism Number of worker threads
+     * @param sink Receives each row
+     * @param <T> Type of each row
+     * @throws IOException If the csv cannot be read
+     */
+    public static <T> void parallel(Path path
+            , Class<T> tClass
+            , Options options
+            , int parallelism
+            , Consumer<? super T> sink) throws IOException {
+        readChunks(path, tClass, options, parallelism, rows -> {
+            while (rows.hasNextValue())
+                sink.accept(rows.nextValue());
+            return null;
+        });
+    }
+
+    private static <T, R> List<R> readChunks(Path path
+            , Class<T> tClass
+            , Options options
+            , int parallelism
+            , Chunk<T, R> chunk) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            ObjectReader reader;
+            if (options.header || indexed(tClass, options)) {
+                // the first record is the header, or it tells how many columns there are
+                long[] records = { -1, size };
+                CsvScanner.scan(channel, 0, size, offset -> {
+                    if (records[0] < 0) {
+                        records[0] = offset;
+                        return true;
+                    }
+                    records[1] = offset;
+                    return false;
+                });
+                if (records[0] < 0)
+                    return new ArrayList<>();
+                ByteBuffer first = channel.map(FileChannel.MapMode.READ_ONLY, records[0], records[1] - records[0]);
+                if (options.header) {
+                    reader = reader(tClass, options, columns(Util.IO.inputStream(first)));
+                    start = records[1];
+                } else {
+                    reader = headless(tClass, options, () -> columns(Util.IO.inputStream(first)));
+                }
+            } else {
+                reader = headless(tClass, options, () -> new String[0]);
+            }
+            long[] parts = split(start, size, parallelism * 4);
+
+            ExecutorService pool = Workers.pool("jackson5-csv", parallelism);
+            try {
+                // every scan is queued before any read, so a read only ever waits for scans which are running
+                List<Future<CsvScanner.Part>> scans = new ArrayList<>();
+                for (int i = 0; i < parts.length - 1; i++) {
+                    long from = parts[i];
+                    long to = parts[i + 1];
+                    scans.add(pool.submit(() -> CsvScanner.part(channel, from, to)));
+                }
+                List<Future<R>> futures = new ArrayList<>();
+                for (int i = 0; i < scans.size(); i++) {
+                    int index = i;
+                    futures.add(pool.submit(() -> {
+                        long[] records = records(scans, index, size);
+                        ByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY
+                                , records[0]
+                                , records[1] - records[0]);
+                        try (MappingIterator<T> rows = reader.readValues(Util.IO.inputStream(range))) {
+                            return chunk.read(rows);
+                        }
+                    }));
+                }
+                List<R> results = new ArrayList<>();
+                for (Future<R> future : futures)
+                    results.add(future.get());
+                return results;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException)
+                    throw (IOException) e.getCause();
+                if (e.getCause() instanceof RuntimeException)
+                    throw (RuntimeException) e.getCause();
+                throw new IOException(e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Split the byte range of the file into equal parts, which the workers align on record boundaries
+     * @param start Offset of the first record
+     * @param end Size of the file
+     * @param parallelism The number of parts to aim for
+     * @return The offsets of each part, followed by the end offset
+     */
+    private static long[] split(long start, long end, int parallelism) {
+        // keep every part within what a single mapped buffer can hold
+        int parts = (int) Math.max(parallelism, (end - start) / (Integer.MAX_VALUE / 2) + 1);
+        long step = Math.max((end - start) / parts, 1);
+        List<Long> offsets = new ArrayList<>();
+        for (long offset = start; offset < end && offsets.size() < parts; offset += step)
+            offsets.add(offset);
+        offsets.add(end);
+        return offsets.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    /**
+     * Find the records of a part, from the first record which starts in it to the first which starts after it.
+     * The state at the start of the part follows from the scans of the parts before it.
+     * @param scans The scans of every part, the first of which starts on a record
+     * @param index The index of the part
+     * @param end Size of the file
+     * @return The offset of the first record and the offset after the last, which are equal when none starts in the part
+     * @throws Exception If a part cannot be scanned
+     */
+    private static long[] records(List<Future<CsvScanner.Part>> scans, int index, long end) throws Exception {
+        int state = CsvScanner.RECORD;
+        for (int i = 0; i < index; i++)
+            state = scan(scans.get(i)).end(state);
+        CsvScanner.Part part = scan(scans.get(index));
+        long from = part.first(state);
+        if (from < 0)
+            return new long[] { 0, 0 };
+        state = part.end(state);
+        for (int i = index + 1; i < scans.size(); i++) {
+            part = scan(scans.get(i));
+            long to = part.first(state);
+            if (to >= 0)
+                return new long[] { from, to };
+            state = part.end(state);
+        }
+        return new long[] { from, end };
+    }
+
+    private static CsvScanner.Part scan(Future<CsvScanner.Part> scan) throws Exception {
+        try {
+            return scan.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Read the column names of a header record
+     * @param header The header record
+     * @return The column names
+     * @throws IOException If the header cannot be parsed
+     */
+    static String[] columns(InputStream header) throws IOException {
+        try (MappingIterator<String[]> records = csvMapper.readerFor(String[].class)
+                .with(CsvParser.Feature.WRAP_AS_ARRAY)
+                .with(CsvParser.Feature.TRIM_SPACES)
+                .readValues(header)) {
+            return records.hasNextValue() ? records.nextValue() : new String[0];
+        }
+    }
+
+    /**
+     * Create a reader for the ranges of a file without a header, so no range takes its first record as a header.
+     * The columns are named by the schema of the options, by the class of the rows, or by index for maps.
+     * @param type The class of the rows
+     * @param options Options representing how the csv is structured
+     * @param first Reads the values of the first record, whose width is the number of columns of maps named by index
+     * @return The ObjectReader configured with the csv schema
+     * @throws IOException If the first record cannot be read
+     */
+    static ObjectReader headless(Class<?> type, Options options, Jackson5.Call<String[], IOException> first)
+            throws IOException {
+        if (indexed(type, options))
+            return reader(type, options, names(null, options, first.call().length));
+        return reader(type, options);
+    }
+
+    /**
+     * Create a reader for header-less ranges of a file whose header has already been read
+     * @param type The class of the rows
+     * @param options Options representing how the csv is structured
+     * @param columns The column names from the header
+     * @return The ObjectReader configured with the csv schema
+     */
+    static ObjectReader reader(Class<?> type, Options options, String[] columns) {
+        CsvSchema csvSchema;
+        if (Objects.nonNull(options.schema)) {
+            csvSchema = options.schema.withoutHeader();
+        } else {
+            CsvSchema.Builder csvSchemaBuilder = CsvSchema.builder();
+            for (String column : columns)
+                csvSchemaBuilder.addColumn(column);
+            csvSchema = csvSchemaBuilder.build();
+        }
+        if (options.withoutQuote)
+            csvSchema = csvSchema.withoutQuoteChar();
+        return csvMapper.readerFor(type)
+                .with(csvSchema)
+                .with(CsvParser.Feature.ALLOW_COMMENTS)
+                .with(CsvParser.Feature.TRIM_SPACES);
+    }
+
+    /**
+     * Iterates the rows of a csv, binding the kept columns of each record
+     * @param <T> Type of each row
+     */
+    private static class Projection<T> implements Iterator<T>, Closeable {
+        private final CsvTokenizer tokenizer;
+        private final Class<T> type;
+        private final ObjectReader reader;
+        private final List<String> values = new ArrayList<>();
+        private final List<String> header;
+        private final Options options;
+        private String[] names = new String[0];
+        private boolean[] keep;
+        private boolean next;
+
+        Projection(CsvTokenizer tokenizer, Class<T> type, Options options) throws IOException {
+            this.tokenizer = tokenizer;
+            this.type = type;
+            this.options = options;
+            this.reader = Map.class.isAssignableFrom(type) ? null : csvMapper.readerFor(type);
+            if (options.header && tokenizer.next(null, values) > 0) {
+                header = new ArrayList<>(values);
+                names = names(header, options, header.size());
+                keep = keep(names, options);
+            } else {
+                header = null;
+                if (Objects.nonNull(options.schema)) {
+                    names = names(null, options, options.schema.size());
+                    keep = keep(names, options);
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!next) {
+                try {
+                    next = tokenizer.next(keep, values) > 0;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (next && header == null && values.size() > names.length) {
+                    // without a header the columns are named as they are first seen
+                    names = names(null, options, values.size());
+                    keep = keep(names, options);
+                    for (int i = 0; i < names.length; i++) {
+                        if (!keep[i])
+                            values.set(i, null);
+                    }
+                }
+            }
+            return next;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            next = false;
+            int width = Math.min(names.length, values.size());
+            try {
+                if (reader == null) {
+                    Map<String, String> row = new LinkedHashMap<>();
+                    for (int i = 0; i < width; i++) {
+                        if (keep[i])
+                            row.put(names[i], values.get(i));
+                    }
+                    return (T) row;
+                }
+                TokenBuffer tokens = new TokenBuffer(csvMapper, false);
+                tokens.writeStartObject();
+                for (int i = 0; i < width; i++) {
+                    if (keep[i]) {
+                        tokens.writeFieldName(names[i]);
+                        tokens.writeString(values.get(i));
+                    }
+                }
+                tokens.writeEndObject();
+                return reader.readValue(tokens.asParser(csvMapper));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            tokenizer.close();
+        }
+    }
+
+    /**
+     * Reads the rows of one range of a file on a worker thread
+     * @param <T> Type of each row
+     * @param <R> Result of the range
+     */
+    @FunctionalInterface
+    private interface Chunk<T, R> {
+        R read(MappingIterator<T> rows) throws IOException;
+    }
+
+    /**
+     * Get the cached reader binding rows to the specified class
+     * @param type The class of the rows
+     * @param options Options representing how the csv is structured
+     * @return The ObjectReader configured with the csv schema
+     */
+    private static ObjectReader reader(Class<?> type, Options options) {
+        Key key = new Key(type, options);
+        ObjectReader reader = readers.get(key);
+        if (reader == null) {
+            CsvSchema csvSchema;
+            if (Objects.nonNull(options.schema))
+                csvSchema = schema(options);
+            else if (options.header)
+                csvSchema = CsvSchema.emptySchema().withHeader();
+            else
+                csvSchema = csvMapper.schemaFor(type);
+
+            if (options.withoutQuote)
+                csvSchema = csvSchema.withoutQuoteChar();
+            reader = csvMapper.readerFor(type)
+                    .with(csvSchema)
+                    .with(CsvParser.Feature.ALLOW_COMMENTS)
+                    .with(CsvParser.Feature.TRIM_SPACES);
+            if (readers.size() < MAX_PLANS)
+                readers.putIfAbsent(key, reader);
+        }
+        return reader;
     }
 
     private static boolean selected(String name, Options options) {
@@ -70,7 +708,16 @@ public class Csv<T> {
                     && Arrays.binarySearch(options.include, name.substring(0, name.lastIndexOf('.'))) >= 0)
                 return true;
         }
-        return (Objects.nonNull(options.exclude) && Arrays.binarySearch(options.exclude, name) < 0);
+        return (Objects.nonNull(options.exclude) && !excluded(name, options.exclude));
+    }
+
+    private static boolean excluded(String name, String[] exclude) {
+        // excluding a parent excludes all of its flattened columns
+        for (int i = name.length(); i > 0; i = name.lastIndexOf('.', i - 1)) {
+            if (Arrays.binarySearch(exclude, name.substring(0, i)) >= 0)
+                return true;
+        }
+        return false;
     }
 
     @SuppressWarnings("unchecked")
@@ -134,6 +781,20 @@ public class Csv<T> {
         else
             o = flattenAll(o, csvSchemaBuilder, options);
 
+        List<Map<String, Object>> rows = o;
+        Jackson5 jackson5 = Jackson5.get();
+        return jackson5.measure(Jackson5Metrics.Operation.CSV_WRITE, () -> csvMapper.writerFor(JsonNode.class)
+                .with(schema(csvSchemaBuilder, options))
+                .writeValueAsString(jackson5.renderer().json(rows)));
+    }
+
+    /**
+     * Build the csv schema from the flattened columns, applying the ordering, header and quote options
+     * @param csvSchemaBuilder Builder holding the flattened columns
+     * @param options Options representing how the csv is rendered
+     * @return The csv schema
+     */
+    private static CsvSchema schema(CsvSchema.Builder csvSchemaBuilder, Options options) {
         CsvSchema csvSchema = csvSchemaBuilder.build()
                 .sortedBy(options.order)
                 .withUseHeader(options.header);
@@ -144,9 +805,17 @@ public class Csv<T> {
         if (Objects.nonNull(options.asc)) {
                 csvSchema = csvSchema.sortedBy(options.asc ? Comparator.naturalOrder() : Comparator.reverseOrder());
         }
-        return new CsvMapper().writerFor(JsonNode.class)
-                .with(csvSchema)
-                .writeValueAsString(Jackson5.get().json(o));
+        return csvSchema;
+    }
+
+    /**
+     * Use the schema supplied with the options, applying only the header and quote options
+     * @param options Options representing how the csv is rendered
+     * @return The csv schema
+     */
+    private static CsvSchema schema(Options options) {
+        CsvSchema csvSchema = options.schema.withUseHeader(options.header);
+        return options.withoutQuote ? csvSchema.withoutQuoteChar() : csvSchema;
     }
 
     /**
@@ -167,17 +836,7 @@ public class Csv<T> {
      * @throws IOException If there is an issue writing CSV
      */
     public static String toCsv(Iterable<?> o, Options options) throws IOException {
-        Iterator<?> iterator = o.iterator();
-        if (iterator.hasNext()) {
-            if (Iterable.class.isAssignableFrom(iterator.next().getClass())) {
-                return new CsvMapper().writerFor(JsonNode.class)
-                        .with(CsvSchema.builder().build().withoutHeader())
-                        .writeValueAsString(Jackson5.get().json(o));
-            }
-        }
-        return asCsv(StreamSupport.stream(o.spliterator(), false)
-                .map(it -> Jackson5.get().map(it))
-                .collect(Collectors.toList()), options);
+        return of(o, options).writeString();
     }
 
     /**
@@ -190,6 +849,98 @@ public class Csv<T> {
        return toCsv(o, Options.header());
     }
 
+    /**
+     * Transcode csv rows into a JSON array of objects one record at a time, in constant memory.
+     * Dotted column names become nested objects, e.g. child.name becomes {"child":{"name":...}},
+     * and only the columns selected by the options are read.
+     * @param csv The csv Reader
+     * @param json The JSON Writer, which is flushed but left open
+     * @param options Options representing how the csv is structured and which columns to read
+     * @throws IOException If there is an issue reading CSV or writing JSON
+     */
+    public static void toJson(Reader csv, Writer json, Options options) throws IOException {
+        try (CsvTokenizer tokenizer = new CsvTokenizer(csv, !options.withoutQuote);
+             JsonGenerator generator = Jackson5.get().mapper().getFactory().createGenerator(json)
+                     .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            List<String> values = new ArrayList<>();
+            boolean[] keep = null;
+            Tree tree = null;
+            if (options.header && tokenizer.next(null, values) > 0) {
+                keep = keep(names(values, options, values.size()), options);
+                tree = Tree.compile(names(values, options, values.size()), keep);
+            }
+            generator.writeStartArray();
+            while (tokenizer.next(keep, values) > 0) {
+                if (tree == null) {
+                    // without a header the columns are named by the first record
+                    String[] names = names(null, options, values.size());
+                    keep = keep(names, options);
+                    tree = Tree.compile(names, keep);
+                }
+                tree.write(generator, values);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    /**
+     * Transcode csv rows into a JSON array of objects one record at a time, in constant memory.
+     * Gzip input is recognized and inflated on a separate thread.
+     * @param csv The csv InputStream
+     * @param json The JSON OutputStream, which is flushed but left open
+     * @param options Options representing how the csv is structured and which columns to read
+     * @throws IOException If there is an issue reading CSV or writing JSON
+     */
+    public static void toJson(InputStream csv, OutputStream json, Options options) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(json, StandardCharsets.UTF_8));
+        toJson(new InputStreamReader(PipelinedGzipInputStream.decompressed(csv), StandardCharsets.UTF_8)
+                , writer
+                , options);
+        writer.flush();
+    }
+
+    /**
+     * Transcode a JSON array of objects, or a sequence of root level objects, into csv one element at a time.
+     * The columns are flattened from the first element using the same rules as {@link #write(Writer)}
+     * and only one element is held in memory at a time.
+     * @param json The JSON Reader
+     * @param csv The csv Writer, which is flushed but left open
+     * @param options Options representing how the csv is rendered
+     * @throws IOException If there is an issue reading JSON or writing CSV
+     */
+    public static void fromJson(Reader json, Writer csv, Options options) throws IOException {
+        try (JsonParser parser = Jackson5.get().mapper().createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY)
+                token = parser.nextToken();
+            if (token == null || token == JsonToken.END_ARRAY)
+                return;
+            TokenBuffer row = TokenBuffer.asCopyOfValue(parser);
+            Plan plan = plan(JsonNode.class, row, options);
+            try (JsonGenerator generator = plan.writer.createGenerator(csv)) {
+                plan.write(generator, row.asParser());
+                for (token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY; token = parser.nextToken())
+                    plan.write(generator, TokenBuffer.asCopyOfValue(parser).asParser());
+            }
+        }
+    }
+
+    /**
+     * Transcode a JSON array of objects, or a sequence of root level objects, into csv one element at a time.
+     * Gzip input is recognized and inflated on a separate thread.
+     * @param json The JSON InputStream
+     * @param csv The csv OutputStream, which is flushed but left open
+     * @param options Options representing how the csv is rendered
+     * @throws IOException If there is an issue reading JSON or writing CSV
+     */
+    public static void fromJson(InputStream json, OutputStream csv, Options options) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(csv, StandardCharsets.UTF_8));
+        fromJson(new InputStreamReader(PipelinedGzipInputStream.decompressed(json), StandardCharsets.UTF_8)
+                , writer
+                , options);
+        writer.flush();
+    }
+
     /**
      * Create Csv object from data list
      * @param <T> Type of each row
@@ -229,10 +980,124 @@ public class Csv<T> {
      * @throws IOException If there is an issue writing CSV
      */
     public String writeString() throws IOException {
-        List<Map<String, Object>> o = StreamSupport.stream(data.spliterator(), false)
-                .map(it -> Jackson5.get().map(it)).collect(Collectors.toList());
+        StringWriter writer = new StringWriter();
+        write(writer);
+        return writer.toString();
+    }
+
+    /**
+     * Write CSV rows to the specified Writer. Rows are pulled from the data one at a time,
+     * flattened and written, so memory use does not depend on the number of rows.
+     * The header comes from the schema supplied with the options, otherwise from the first row.
+     * Every row is written in those columns: fields the first row does not have, such as the fields of a nested
+     * object which was null in it, are dropped, and columns a row does not have are empty.
+     * The Writer is flushed but not closed.
+     * @param writer Write to this Writer
+     * @throws IOException If there is an issue writing CSV
+     */
+    public void write(Writer writer) throws IOException {
+        Jackson5 jackson5 = Jackson5.get();
+        Jackson5Metrics metrics = jackson5.metrics();
+        Flights.Span span = Flights.begin(Flights.Kind.CSV_WRITE);
+        if (metrics == null && span == null) {
+            write(writer, jackson5);
+            return;
+        }
+        Util.IO.CountingWriter counted = new Util.IO.CountingWriter(writer);
+        long start = System.nanoTime();
+        try {
+            write(counted, jackson5);
+        } finally {
+            if (metrics != null) {
+                metrics.timed(jackson5.getName(), Jackson5Metrics.Operation.CSV_WRITE, System.nanoTime() - start);
+                metrics.bytes(jackson5.getName(), Jackson5Metrics.Operation.CSV_WRITE, counted.count);
+            }
+            if (span != null)
+                span.end(jackson5.getName(), null, null, 0, counted.count);
+        }
+    }
+
+    private void write(Writer writer, Jackson5 jackson5) throws IOException {
+        Iterator<T> rows = data.iterator();
+        if (!rows.hasNext()) {
+            // a supplied schema names the columns even when there are no rows
+            if (Objects.nonNull(options.schema) && options.header)
+                header(writer, schema(options));
+            return;
+        }
+        T first = rows.next();
+
+        if (first instanceof Iterable) {
+            // rows are already lists of values
+            // flushed once at the end, as a flush per row would make each row a gzip member of its own
+            // when writing to a ParallelGzipOutputStream
+            try (SequenceWriter sequenceWriter = csvMapper.writer(CsvSchema.emptySchema())
+                    .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                    .writeValues(writer)) {
+                sequenceWriter.write(first);
+                while (rows.hasNext())
+                    sequenceWriter.write(rows.next());
+            }
+            return;
+        }
+
+        // rows are serialized to tokens, which the plan matches to the columns without building a tree
+        FieldsDSL renderer = jackson5.renderer();
+        TokenBuffer row = renderer.tokens(first);
+        Plan plan = plan(first.getClass(), row, options);
+        try (JsonGenerator generator = plan.writer.createGenerator(writer)) {
+            plan.write(generator, row.asParser());
+            while (rows.hasNext())
+                plan.write(generator, renderer.tokens(rows.next()).asParser());
+        }
+    }
 
-        return Csv.asCsv(o, options);
+    /**
+     * Write the header record of a schema
+     * @param writer Write to this Writer
+     * @param csvSchema The schema naming the columns
+     * @throws IOException If there is an issue writing CSV
+     */
+    private static void header(Writer writer, CsvSchema csvSchema) throws IOException {
+        List<String> names = new ArrayList<>();
+        csvSchema.forEach(column -> names.add(column.getName()));
+        try (SequenceWriter sequenceWriter = csvMapper.writer(csvSchema.withoutHeader())
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+                .writeValues(writer)) {
+            sequenceWriter.write(names);
+        }
+    }
+
+    /**
+     * Get the cached column plan for rows of this class, options and shape, compiling it if needed
+     * @param type The class of the rows
+     * @param row The tokens of the first row, used to discover the columns
+     * @param options Options representing how the csv is rendered
+     * @return The column plan
+     * @throws IOException If the tokens cannot be read
+     */
+    private static Plan plan(Class<?> type, TokenBuffer row, Options options) throws IOException {
+        Key key = new Key(type, options, Plan.shape(row.asParser()));
+        Plan plan = plans.get(key);
+        if (plan == null) {
+            plan = Plan.compile(row.asParser(), options);
+            if (plans.size() < MAX_PLANS)
+                plans.putIfAbsent(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * Write CSV rows to the specified OutputStream as UTF-8. The OutputStream is flushed but not closed.
+     * @param outputStream Write to this OutputStream
+     * @throws IOException If there is an issue writing CSV
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        write(writer);
+        writer.flush();
     }
 
     /**
@@ -241,7 +1106,9 @@ public class Csv<T> {
      * @throws IOException If there is an issue writing CSV
      */
     public void write(Path path) throws IOException {
-        Files.write(path, writeString().getBytes(StandardCharsets.UTF_8));
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            write(writer);
+        }
     }
     /**
      * Write CSV String to a file
@@ -266,7 +1133,338 @@ public class Csv<T> {
      * @throws IOException If there is an issue writing CSV
      */
     public void write(PrintWriter printWriter) throws IOException {
-        printWriter.write(writeString());
+        write((Writer) printWriter);
+    }
+
+    /**
+     * Precomputed columns for a row shape: a tree of the field names on the path to each column,
+     * which the tokens of a row are matched against in one pass, and a reusable writer configured with the schema.
+     * Later rows of another shape are written in the same columns, leaving out what the first row did not have.
+     */
+    private static class Plan {
+        /**
+         * Describe the field structure of a row, which determines the columns it flattens to
+         * @param row The tokens of the row
+         * @return The shape of the row
+         * @throws IOException If the tokens cannot be read
+         */
+        static String shape(JsonParser row) throws IOException {
+            StringBuilder sb = new StringBuilder();
+            if (row.nextToken() == JsonToken.START_OBJECT)
+                shape(row, sb);
+            return sb.toString();
+        }
+
+        private static void shape(JsonParser row, StringBuilder sb) throws IOException {
+            sb.append('{');
+            while (row.nextToken() == JsonToken.FIELD_NAME) {
+                String name = row.getCurrentName();
+                sb.append(name.length()).append(':').append(name);
+                if (row.nextToken() == JsonToken.START_OBJECT)
+                    shape(row, sb);
+                else
+                    row.skipChildren();
+            }
+            sb.append('}');
+        }
+
+        /**
+         * Flatten and select the columns of the row once, following the same rules as flatten
+         * @param row The tokens of the first row
+         * @param options Options representing how the csv is rendered
+         * @return The compiled plan
+         * @throws IOException If the tokens cannot be read
+         */
+        static Plan compile(JsonParser row, Options options) throws IOException {
+            Map<String, List<String>> columns = new LinkedHashMap<>();
+            if (row.nextToken() == JsonToken.START_OBJECT)
+                compile(row, new Stack<>(), columns, options);
+
+            CsvSchema csvSchema;
+            if (Objects.isNull(options.schema)) {
+                CsvSchema.Builder csvSchemaBuilder = CsvSchema.builder();
+                columns.keySet().forEach(csvSchemaBuilder::addColumn);
+                csvSchema = schema(csvSchemaBuilder, options);
+            } else {
+                csvSchema = schema(options);
+            }
+
+            Field root = new Field(null);
+            for (int i = 0; i < csvSchema.size(); i++) {
+                String name = csvSchema.columnName(i);
+                root.add(columns.containsKey(name) ? columns.get(name) : Arrays.asList(name.split("\\.")), 0, i);
+            }
+            return new Plan(root
+                    , csvSchema.size()
+                    , csvSchema.getArrayElementSeparator()
+                    , csvMapper.writer(csvSchema).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET));
+        }
+
+        private static void compile(JsonParser row
+                , Stack<String> path
+                , Map<String, List<String>> columns
+                , Options options) throws IOException {
+            while (row.nextToken() == JsonToken.FIELD_NAME) {
+                String k = row.getCurrentName();
+                path.push(k);
+                String name = String.join(".", path);
+                if (row.nextToken() == JsonToken.START_OBJECT) {
+                    if (selected(name, options))
+                        compile(row, path, columns, options);
+                    else
+                        row.skipChildren();
+                } else {
+                    row.skipChildren();
+                    if (selected(name, options))
+                        columns.put(columns.containsKey(k) ? name : k, new ArrayList<>(path));
+                }
+                path.pop();
+            }
+        }
+
+        private final Field root;
+        private final int width;
+        private final String separator;
+        final ObjectWriter writer;
+
+        private Plan(Field root, int width, String separator, ObjectWriter writer) {
+            this.root = root;
+            this.width = width;
+            this.separator = separator;
+            this.writer = writer;
+        }
+
+        /**
+         * Write a row, reading its tokens once and keeping the values of the columns, then writing them in order
+         * @param generator The csv generator
+         * @param row The tokens of the row, before or at the start of the row
+         * @throws JsonGenerationException If an array column holds objects or arrays, which csv cannot hold
+         * @throws IOException If there is an issue writing CSV
+         */
+        @SuppressWarnings("unchecked")
+        void write(JsonGenerator generator, JsonParser row) throws IOException {
+            JsonToken[] tokens = new JsonToken[width];
+            Object[] values = new Object[width];
+            JsonToken token = row.hasCurrentToken() ? row.currentToken() : row.nextToken();
+            if (token == JsonToken.START_OBJECT)
+                read(row, root, tokens, values, generator);
+            else
+                row.skipChildren();
+
+            generator.writeStartArray();
+            for (int i = 0; i < width; i++) {
+                // a column the row does not have, or which holds an object, is empty
+                if (tokens[i] == null) {
+                    generator.writeNull();
+                    continue;
+                }
+                switch (tokens[i]) {
+                    case VALUE_STRING: generator.writeString((String) values[i]); break;
+                    case VALUE_NUMBER_INT:
+                    case VALUE_NUMBER_FLOAT: generator.writeNumber((String) values[i]); break;
+                    case VALUE_TRUE:
+                    case VALUE_FALSE: generator.writeBoolean(tokens[i] == JsonToken.VALUE_TRUE); break;
+                    // the generator only separates the elements of arrays it writes as object fields
+                    case START_ARRAY: generator.writeString(String.join(separator, (List<String>) values[i])); break;
+                    default: generator.writeNull(); break;
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        private static void read(JsonParser row
+                , Field field
+                , JsonToken[] tokens
+                , Object[] values
+                , JsonGenerator generator) throws IOException {
+            while (row.nextToken() == JsonToken.FIELD_NAME) {
+                Field next = field.fields.get(row.getCurrentName());
+                JsonToken token = row.nextToken();
+                if (next == null) {
+                    // a field the first row did not have
+                    row.skipChildren();
+                } else if (token == JsonToken.START_OBJECT) {
+                    // the fields of an object where the first row had a value are left out
+                    read(row, next, tokens, values, generator);
+                } else if (next.column < 0) {
+                    // a value where the first row had an object
+                    row.skipChildren();
+                } else if (token == JsonToken.START_ARRAY) {
+                    tokens[next.column] = token;
+                    values[next.column] = elements(row, next, generator);
+                } else {
+                    tokens[next.column] = token == JsonToken.VALUE_EMBEDDED_OBJECT ? JsonToken.VALUE_STRING : token;
+                    values[next.column] = text(row);
+                }
+            }
+        }
+
+        private static List<String> elements(JsonParser row, Field field, JsonGenerator generator) throws IOException {
+            List<String> elements = new ArrayList<>();
+            while (row.nextToken() != JsonToken.END_ARRAY) {
+                if (row.currentToken().isStructStart())
+                    throw new JsonGenerationException(
+                            String.format("array column %s holds an object or array", field.name), generator);
+                elements.add(text(row));
+            }
+            return elements;
+        }
+
+        /**
+         * @return The text of a value token, as the JsonNode of the value would render it
+         */
+        private static String text(JsonParser row) throws IOException {
+            switch (row.currentToken()) {
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT: return String.valueOf(row.getNumberValue());
+                case VALUE_EMBEDDED_OBJECT:
+                    Object value = row.getEmbeddedObject();
+                    return value instanceof byte[]
+                            ? Base64Variants.getDefaultVariant().encode((byte[]) value)
+                            : String.valueOf(value);
+                default: return row.getText();
+            }
+        }
+
+        /**
+         * A field on the path to one or more columns
+         */
+        private static final class Field {
+            final String name;
+            final Map<String, Field> fields = new HashMap<>();
+            int column = -1;
+
+            Field(String name) {
+                this.name = name;
+            }
+
+            void add(List<String> path, int depth, int column) {
+                if (depth == path.size()) {
+                    this.column = column;
+                    return;
+                }
+                String key = path.get(depth);
+                fields.computeIfAbsent(key, k -> new Field(name == null ? k : name + '.' + k))
+                        .add(path, depth + 1, column);
+            }
+        }
+    }
+
+    /**
+     * Nested JSON objects compiled from the csv header, where dotted column names are paths
+     */
+    private static class Tree {
+        /**
+         * Compile the tree of the kept columns
+         * @param names The column names
+         * @param keep Whether each column is kept
+         * @return The root object
+         */
+        static Tree compile(String[] names, boolean[] keep) {
+            Map<String, Object> root = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                if (keep[i])
+                    add(root, root, names[i].split("\\."), 0, i);
+            }
+            return new Tree(root);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static void add(Map<String, Object> root
+                , Map<String, Object> fields
+                , String[] path
+                , int depth
+                , int column) {
+            String key = path[depth];
+            Object field = fields.get(key);
+            boolean leaf = depth == path.length - 1;
+            if (leaf && field == null) {
+                fields.put(key, column);
+            } else if (!leaf && (field == null || field instanceof Map)) {
+                Map<String, Object> child = (Map<String, Object>) field;
+                if (child == null) {
+                    child = new LinkedHashMap<>();
+                    fields.put(key, child);
+                }
+                add(root, child, path, depth + 1, column);
+            } else {
+                // the name clashes with another column or object, so keep it flat at the top level
+                root.putIfAbsent(String.join(".", path), column);
+            }
+        }
+
+        final SerializedString[] keys;
+        final int[] columns;
+        final Tree[] children;
+
+        @SuppressWarnings("unchecked")
+        private Tree(Map<String, Object> fields) {
+            keys = new SerializedString[fields.size()];
+            columns = new int[fields.size()];
+            children = new Tree[fields.size()];
+            int i = 0;
+            for (Map.Entry<String, Object> field : fields.entrySet()) {
+                keys[i] = new SerializedString(field.getKey());
+                if (field.getValue() instanceof Map) {
+                    columns[i] = -1;
+                    children[i] = new Tree((Map<String, Object>) field.getValue());
+                } else {
+                    columns[i] = (Integer) field.getValue();
+                }
+                i++;
+            }
+        }
+
+        /**
+         * Write one record as a JSON object
+         * @param generator The JSON generator
+         * @param values The values of the record
+         * @throws IOException If there is an issue writing JSON
+         */
+        void write(JsonGenerator generator, List<String> values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < keys.length; i++) {
+                generator.writeFieldName(keys[i]);
+                if (columns[i] < 0)
+                    children[i].write(generator, values);
+                else if (columns[i] < values.size())
+                    generator.writeString(values.get(columns[i]));
+                else
+                    generator.writeNull();
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Cache key of a row class, a snapshot of the options and, for column plans, the row shape
+     */
+    private static class Key {
+        private final Class<?> type;
+        private final Options options;
+        private final String shape;
+
+        Key(Class<?> type, Options options, String shape) {
+            this.type = type;
+            this.options = options.copy();
+            this.shape = shape;
+        }
+        Key(Class<?> type, Options options) {
+            this(type, options, Util.Str.EMPTY);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key planKey = (Key) o;
+            return type.equals(planKey.type) && options.equals(planKey.options) && shape.equals(planKey.shape);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, options, shape);
+        }
     }
 
     /**
@@ -295,9 +1493,56 @@ public class Csv<T> {
         private String[] exclude;
         private String[] order = new String[]{};
         private Boolean asc = null;
+        private CsvSchema schema;
 
         private Options() {}
 
+        // package protected getters
+        boolean hasHeader() {
+            return header;
+        }
+        boolean withoutQuotes() {
+            return withoutQuote;
+        }
+        boolean projected() {
+            return include != null || exclude != null;
+        }
+
+        private Options copy() {
+            Options options = new Options();
+            options.header = header;
+            options.withoutQuote = withoutQuote;
+            options.include = include;
+            options.exclude = exclude;
+            options.order = order;
+            options.asc = asc;
+            options.schema = schema;
+            return options;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Options)) return false;
+            Options options = (Options) o;
+            return header == options.header
+                    && withoutQuote == options.withoutQuote
+                    && Arrays.equals(include, options.include)
+                    && Arrays.equals(exclude, options.exclude)
+                    && Arrays.equals(order, options.order)
+                    && Objects.equals(asc, options.asc)
+                    && Objects.equals(schema, options.schema);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Objects.hash(header, withoutQuote, asc, schema);
+            result = 31 * result + Arrays.hashCode(include);
+            result = 31 * result + Arrays.hashCode(exclude);
+            result = 31 * result + Arrays.hashCode(order);
+            return result;
+        }
+
         /**
          * Don't include header in csv
          * @return this Options object
@@ -338,6 +1583,20 @@ public class Csv<T> {
             return this;
         }
 
+        /**
+         * Columns to include and exclude using the Fields DSL, where nested fields name the flattened columns
+         * e.g. {@code name child{ name }} selects the columns name and child.name
+         * @param fields The fields to include and exclude
+         * @return this Options object
+         */
+        public Options fields(IFields fields) {
+            if (Util.Str.isNotBlank(fields.include()))
+                include(Jackson5.get().renderer().paths(fields.include()).toArray(new String[0]));
+            if (Util.Str.isNotBlank(fields.exclude()))
+                exclude(Jackson5.get().renderer().paths(fields.exclude()).toArray(new String[0]));
+            return this;
+        }
+
         /**
          * Order the specified columns
          * @param order List of columns to order by
@@ -348,6 +1607,16 @@ public class Csv<T> {
             return this;
         }
 
+        /**
+         * Use the supplied schema for the columns and header instead of deriving them from the first row
+         * @param schema The csv schema describing the columns
+         * @return this Options object
+         */
+        public Options schema(CsvSchema schema) {
+            this.schema = schema;
+            return this;
+        }
+
         /**
          * Sort in ascending order
          * @return this Options object
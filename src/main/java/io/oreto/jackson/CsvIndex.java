@@ -0,0 +1,201 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Index of the record start offsets of a memory mapped CSV file.
+ * The index is built in one pass and lets any range of rows be parsed without reading the rows before it.
+ */
+public class CsvIndex {
+    static final String EXTENSION = ".idx";
+    private static final int MAGIC = 0x4A354958;
+    private static final int WINDOW = 1 << 30;
+
+    /**
+     * Load the saved index of the file if it is still fresh, otherwise build it
+     * @param path Path to the csv file
+     * @param options Options representing how the csv is structured
+     * @return The index of the file
+     * @throws IOException If the csv cannot be read
+     */
+    static CsvIndex of(Path path, Csv.Options options) throws IOException {
+        Optional<CsvIndex> saved = load(path, options);
+        return saved.isPresent() ? saved.get() : build(path, options);
+    }
+
+    /**
+     * Scan the memory mapped file and record the offset of every record
+     * @param path Path to the csv file
+     * @param options Options representing how the csv is structured
+     * @return The index of the file
+     * @throws IOException If the csv cannot be read
+     */
+    static CsvIndex build(Path path, Csv.Options options) throws IOException {
+        Offsets offsets = new Offsets();
+        long size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            CsvScanner scanner = new CsvScanner();
+            for (long position = 0; position < size; position += WINDOW) {
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY
+                        , position
+                        , Math.min(WINDOW, size - position));
+                scanner.scan(window, position, offsets::add);
+            }
+        }
+        return new CsvIndex(path, options, size, Files.getLastModifiedTime(path).toMillis(), offsets.toArray());
+    }
+
+    /**
+     * Load the index saved beside the file
+     * @param path Path to the csv file
+     * @param options Options representing how the csv is structured
+     * @return The saved index, or Optional.empty if there is none or the file changed since it was saved
+     * @throws IOException If the index cannot be read
+     */
+    static Optional<CsvIndex> load(Path path, Csv.Options options) throws IOException {
+        Path indexPath = indexPath(path);
+        if (!Files.exists(indexPath))
+            return Optional.empty();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexPath)))) {
+            if (in.readInt() != MAGIC)
+                return Optional.empty();
+            long size = in.readLong();
+            long modified = in.readLong();
+            if (size != Files.size(path) || modified != Files.getLastModifiedTime(path).toMillis())
+                return Optional.empty();
+            long[] offsets = new long[in.readInt()];
+            for (int i = 0; i < offsets.length; i++)
+                offsets[i] = in.readLong();
+            return Optional.of(new CsvIndex(path, options, size, modified, offsets));
+        }
+    }
+
+    static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + EXTENSION);
+    }
+
+    private final Path path;
+    private final Csv.Options options;
+    private final long size;
+    private final long modified;
+    // start offset of every record, including the header when there is one
+    private final long[] offsets;
+    private final int first;
+    private String[] columns;
+
+    private CsvIndex(Path path, Csv.Options options, long size, long modified, long[] offsets) {
+        this.path = path;
+        this.options = options;
+        this.size = size;
+        this.modified = modified;
+        this.offsets = offsets;
+        this.first = options.hasHeader() && offsets.length > 0 ? 1 : 0;
+    }
+
+    /**
+     * @return The number of rows in the file, not counting the header
+     */
+    public int size() {
+        return offsets.length - first;
+    }
+
+    /**
+     * Save the index beside the file, so it can be loaded instead of scanning the file again
+     * @return this CsvIndex
+     * @throws IOException If the index cannot be written
+     */
+    public CsvIndex save() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexPath(path))))) {
+            out.writeInt(MAGIC);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeInt(offsets.length);
+            for (long offset : offsets)
+                out.writeLong(offset);
+        }
+        return this;
+    }
+
+    /**
+     * Read a range of rows using the same slice notation as the Fields DSL, such as [1000000:1000100],
+     * [5], [-1] or [:9]. The bounds are inclusive and negative bounds count from the end.
+     * @param slice The range of rows
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return The rows in the range
+     * @throws IOException If the csv cannot be read
+     */
+    public <T> List<T> rows(String slice, Class<T> tClass) throws IOException {
+        if (size() == 0)
+            return new ArrayList<>();
+        FieldsDSL.Subset subset = FieldsDSL.Subset.parse(slice).size(size());
+        return rows(subset.computeStart(), subset.computeEnd() + 1, tClass);
+    }
+
+    /**
+     * Read a range of rows, parsing only the bytes of those rows
+     * @param from Index of the first row
+     * @param to Index after the last row
+     * @param tClass Class type of each row
+     * @param <T> Type of each row
+     * @return The rows in the range
+     * @throws IOException If the csv cannot be read
+     */
+    public <T> List<T> rows(int from, int to, Class<T> tClass) throws IOException {
+        to = Math.min(to, size());
+        if (from < 0 || from >= to)
+            return new ArrayList<>();
+        ObjectReader reader = options.hasHeader()
+                ? Csv.reader(tClass, options, columns())
+                : Csv.headless(tClass, options, this::columns);
+        try (MappingIterator<T> rows = reader.readValues(Util.IO.inputStream(map(first + from, first + to)))) {
+            return rows.readAll();
+        }
+    }
+
+    private String[] columns() throws IOException {
+        if (columns == null)
+            columns = Csv.columns(Util.IO.inputStream(map(0, 1)));
+        return columns;
+    }
+
+    private ByteBuffer map(int from, int to) throws IOException {
+        long start = offsets[from];
+        long end = to < offsets.length ? offsets[to] : size;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        }
+    }
+
+    /**
+     * Growable primitive array of offsets
+     */
+    private static class Offsets {
+        private long[] offsets = new long[1024];
+        private int size;
+
+        boolean add(long offset) {
+            if (size == offsets.length)
+                offsets = Arrays.copyOf(offsets, size + (size >> 1));
+            offsets[size++] = offset;
+            return true;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(offsets, size);
+        }
+    }
+}
@@ -0,0 +1,763 @@
+package io.oreto.jackson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Read-only columnar table loaded from CSV.
+ * Each column is stored in a growable primitive array, strings are dictionary encoded,
+ * and the numeric columns can optionally live off-heap.
+ * Columns left out by {@link Csv.Options#include(String...)} or {@link Csv.Options#exclude(String...)} are skipped
+ * while reading and never stored.
+ */
+public class CsvTable {
+    /**
+     * Start configuring how a table is loaded
+     * @return new Loader
+     */
+    public static Loader loader() {
+        return new Loader();
+    }
+
+    private final List<Column> columns;
+    private final Map<String, Column> names;
+    private final int rows;
+
+    private CsvTable(List<Column> columns, int rows) {
+        this.columns = Collections.unmodifiableList(columns);
+        this.names = new LinkedHashMap<>();
+        columns.forEach(column -> names.put(column.name, column));
+        this.rows = rows;
+    }
+
+    /**
+     * @return The number of rows in the table
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return The columns of the table in csv order
+     */
+    public List<Column> columns() {
+        return columns;
+    }
+
+    /**
+     * Get a column by name
+     * @param name The column name
+     * @return The column
+     * @throws IllegalArgumentException If there is no such column
+     */
+    public Column column(String name) {
+        Column column = names.get(name);
+        if (column == null)
+            throw new IllegalArgumentException(String.format("no column named %s", name));
+        return column;
+    }
+
+    /**
+     * @param name The column name
+     * @return The int column
+     * @throws IllegalArgumentException If there is no such column or it is not an int column
+     */
+    public IntColumn ints(String name) {
+        return column(name, IntColumn.class);
+    }
+
+    /**
+     * @param name The column name
+     * @return The long column
+     * @throws IllegalArgumentException If there is no such column or it is not a long column
+     */
+    public LongColumn longs(String name) {
+        return column(name, LongColumn.class);
+    }
+
+    /**
+     * @param name The column name
+     * @return The double column
+     * @throws IllegalArgumentException If there is no such column or it is not a double column
+     */
+    public DoubleColumn doubles(String name) {
+        return column(name, DoubleColumn.class);
+    }
+
+    /**
+     * @param name The column name
+     * @return The string column
+     * @throws IllegalArgumentException If there is no such column or it is not a string column
+     */
+    public StringColumn strings(String name) {
+        return column(name, StringColumn.class);
+    }
+
+    private <C extends Column> C column(String name, Class<C> type) {
+        Column column = column(name);
+        if (!type.isInstance(column))
+            throw new IllegalArgumentException(String.format("column %s is of type %s", name, column.type()));
+        return type.cast(column);
+    }
+
+    /**
+     * The type of a column
+     */
+    public enum Type { INT, LONG, DOUBLE, STRING }
+
+    /**
+     * Configures and loads a table
+     */
+    public static class Loader {
+        private static final int SAMPLE = 1000;
+
+        private final Map<String, Type> types = new HashMap<>();
+        private boolean offHeap;
+
+        private Loader() {}
+
+        /**
+         * Use this type for the column instead of inferring it. The column is never widened,
+         * a value which does not fit fails the load.
+         * @param column The column name
+         * @param type The column type
+         * @return this Loader
+         */
+        public Loader type(String column, Type type) {
+            types.put(column, type);
+            return this;
+        }
+
+        /**
+         * Store the numeric columns and string codes in direct memory outside the heap
+         * @return this Loader
+         */
+        public Loader offHeap() {
+            this.offHeap = true;
+            return this;
+        }
+
+        /**
+         * Load the table from a csv file
+         * @param path Path to the csv file
+         * @param options Options representing how the csv is structured
+         * @return The loaded table
+         * @throws IOException If the csv cannot be read
+         */
+        public CsvTable load(Path path, Csv.Options options) throws IOException {
+            try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                return load(reader, options);
+            }
+        }
+
+        /**
+         * Load the table from a csv file with a header
+         * @param path Path to the csv file
+         * @return The loaded table
+         * @throws IOException If the csv cannot be read
+         */
+        public CsvTable load(Path path) throws IOException {
+            return load(path, Csv.Options.header());
+        }
+
+        /**
+         * Load the table from csv. Column types which are not specified are inferred from the first rows
+         * and widened from int to long to double to string if a later value does not fit.
+         * @param reader The csv Reader
+         * @param options Options representing how the csv is structured
+         * @return The loaded table
+         * @throws IOException If the csv cannot be read or a value does not fit the type given for its column
+         */
+        public CsvTable load(Reader reader, Csv.Options options) throws IOException {
+            try (CsvTokenizer tokenizer = new CsvTokenizer(reader, !options.withoutQuotes())) {
+                List<String> values = new ArrayList<>();
+                List<String> header = options.hasHeader() && tokenizer.next(null, values) > 0
+                        ? new ArrayList<>(values)
+                        : null;
+                boolean[] keep = header == null ? null : Csv.keep(Csv.names(header, options, header.size()), options);
+
+                // buffer a sample of rows to infer the column types
+                List<List<String>> sample = new ArrayList<>();
+                while (sample.size() < SAMPLE && tokenizer.next(keep, values) > 0)
+                    sample.add(new ArrayList<>(values));
+                int width = header == null ? 0 : header.size();
+                for (List<String> row : sample)
+                    width = Math.max(width, row.size());
+                String[] names = Csv.names(header, options, width);
+                keep = Csv.keep(names, options);
+
+                // positions of the kept columns in each record
+                int[] positions = new int[width];
+                List<Column> columns = new ArrayList<>();
+                for (int i = 0; i < width; i++) {
+                    if (keep[i]) {
+                        positions[columns.size()] = i;
+                        columns.add(column(names[i], types.containsKey(names[i]) ? types.get(names[i]) : infer(sample, i)));
+                    }
+                }
+                positions = Arrays.copyOf(positions, columns.size());
+
+                int rows = 0;
+                for (List<String> row : sample)
+                    append(columns, positions, row, rows++);
+                while (tokenizer.next(keep, values) > 0)
+                    append(columns, positions, values, rows++);
+                columns.forEach(Column::freeze);
+                return new CsvTable(columns, rows);
+            }
+        }
+
+        private static Type infer(List<List<String>> sample, int index) {
+            Type type = Type.INT;
+            for (List<String> row : sample) {
+                String value = index < row.size() ? row.get(index) : null;
+                if (value != null && !value.isEmpty())
+                    type = widen(type, value);
+            }
+            return type;
+        }
+
+        private static Type widen(Type type, String value) {
+            switch (type) {
+                case INT: if (Numbers.isInt(value)) return Type.INT;
+                // fall through
+                case LONG: if (Numbers.isLong(value)) return Type.LONG;
+                // fall through
+                case DOUBLE: if (Numbers.isDouble(value)) return Type.DOUBLE;
+                // fall through
+                default: return Type.STRING;
+            }
+        }
+
+        private void append(List<Column> columns, int[] positions, List<String> row, int index) throws IOException {
+            for (int i = 0; i < columns.size(); i++) {
+                String value = positions[i] < row.size() ? row.get(positions[i]) : null;
+                Column column = columns.get(i);
+                if (value == null || value.isEmpty()) {
+                    column.appendMissing();
+                } else if (!column.append(value)) {
+                    if (types.containsKey(column.name))
+                        throw new IOException(String.format("row %d: %s does not fit column %s of type %s"
+                                , index + 1, value, column.name, column.type()));
+                    // widen the column to a type which fits the value
+                    column = copy(column, widen(column.type(), value), index);
+                    column.append(value);
+                    columns.set(i, column);
+                }
+            }
+        }
+
+        private Column column(String name, Type type) {
+            switch (type) {
+                case INT: return new IntColumn(name, offHeap);
+                case LONG: return new LongColumn(name, offHeap);
+                case DOUBLE: return new DoubleColumn(name, offHeap);
+                default: return new StringColumn(name, offHeap);
+            }
+        }
+
+        private Column copy(Column column, Type type, int size) {
+            Column wider = column(column.name, type);
+            for (int i = 0; i < size; i++) {
+                if (column.isMissing(i)) wider.appendMissing();
+                else wider.append(column.raw(i));
+            }
+            return wider;
+        }
+    }
+
+    /**
+     * A column of the table
+     */
+    public abstract static class Column {
+        final String name;
+        private BitSet missing;
+        // values whose text does not read back as written, such as 1e3, kept while loading in case of widening
+        private Map<Integer, String> raw;
+        int size;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @return The column name
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return The column type
+         */
+        public abstract Type type();
+
+        /**
+         * @return The number of values in the column
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @param row The row index
+         * @return true if the csv cell was empty
+         */
+        public boolean isMissing(int row) {
+            return missing != null && missing.get(row);
+        }
+
+        /**
+         * @param row The row index
+         * @return The value as text, or null if it is missing
+         */
+        public abstract String text(int row);
+
+        abstract boolean append(String value);
+
+        void appendMissing() {
+            if (missing == null)
+                missing = new BitSet();
+            missing.set(size);
+            append(type() == Type.STRING ? Util.Str.EMPTY : "0");
+        }
+
+        /**
+         * Keep the text of the value being appended, as its text would not be the same
+         */
+        void keep(String value) {
+            if (raw == null)
+                raw = new HashMap<>();
+            raw.put(size, value);
+        }
+
+        /**
+         * @return The value as it was written in the csv
+         */
+        String raw(int row) {
+            String value = raw == null ? null : raw.get(row);
+            return value == null ? text(row) : value;
+        }
+
+        void freeze() {
+            raw = null;
+        }
+
+        void checkIndex(int row) {
+            if (row < 0 || row >= size)
+                throw new IndexOutOfBoundsException(String.format("row %d of %d", row, size));
+        }
+    }
+
+    /**
+     * Column of int values
+     */
+    public static class IntColumn extends Column {
+        private final Ints values;
+
+        IntColumn(String name, boolean offHeap) {
+            super(name);
+            this.values = new Ints(offHeap);
+        }
+
+        @Override
+        public Type type() {
+            return Type.INT;
+        }
+
+        /**
+         * @param row The row index
+         * @return The value, 0 if it is missing
+         */
+        public int get(int row) {
+            checkIndex(row);
+            return values.get(row);
+        }
+
+        /**
+         * @return The values as a stream
+         */
+        public IntStream stream() {
+            return IntStream.range(0, size).map(values::get);
+        }
+
+        @Override
+        public String text(int row) {
+            return isMissing(row) ? null : String.valueOf(get(row));
+        }
+
+        @Override
+        boolean append(String value) {
+            if (!Numbers.isInt(value))
+                return false;
+            if (!Numbers.canonical(value))
+                keep(value);
+            values.add((int) Numbers.parseLong(value));
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Column of long values
+     */
+    public static class LongColumn extends Column {
+        private final Longs values;
+
+        LongColumn(String name, boolean offHeap) {
+            super(name);
+            this.values = new Longs(offHeap);
+        }
+
+        @Override
+        public Type type() {
+            return Type.LONG;
+        }
+
+        /**
+         * @param row The row index
+         * @return The value, 0 if it is missing
+         */
+        public long get(int row) {
+            checkIndex(row);
+            return values.get(row);
+        }
+
+        /**
+         * @return The values as a stream
+         */
+        public LongStream stream() {
+            return IntStream.range(0, size).mapToLong(values::get);
+        }
+
+        @Override
+        public String text(int row) {
+            return isMissing(row) ? null : String.valueOf(get(row));
+        }
+
+        @Override
+        boolean append(String value) {
+            if (!Numbers.isLong(value))
+                return false;
+            if (!Numbers.canonical(value))
+                keep(value);
+            values.add(Numbers.parseLong(value));
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Column of double values
+     */
+    public static class DoubleColumn extends Column {
+        private final Doubles values;
+
+        DoubleColumn(String name, boolean offHeap) {
+            super(name);
+            this.values = new Doubles(offHeap);
+        }
+
+        @Override
+        public Type type() {
+            return Type.DOUBLE;
+        }
+
+        /**
+         * @param row The row index
+         * @return The value, 0 if it is missing
+         */
+        public double get(int row) {
+            checkIndex(row);
+            return values.get(row);
+        }
+
+        /**
+         * @return The values as a stream
+         */
+        public DoubleStream stream() {
+            return IntStream.range(0, size).mapToDouble(values::get);
+        }
+
+        @Override
+        public String text(int row) {
+            return isMissing(row) ? null : String.valueOf(get(row));
+        }
+
+        @Override
+        boolean append(String value) {
+            if (!Numbers.isDouble(value))
+                return false;
+            double d = Double.parseDouble(value);
+            if (!Double.toString(d).equals(value))
+                keep(value);
+            values.add(d);
+            size++;
+            return true;
+        }
+    }
+
+    /**
+     * Dictionary encoded column of string values
+     */
+    public static class StringColumn extends Column {
+        private final Ints codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private Map<String, Integer> lookup = new HashMap<>();
+
+        StringColumn(String name, boolean offHeap) {
+            super(name);
+            this.codes = new Ints(offHeap);
+        }
+
+        @Override
+        public Type type() {
+            return Type.STRING;
+        }
+
+        /**
+         * @param row The row index
+         * @return The value, empty if it is missing
+         */
+        public String get(int row) {
+            return dictionary.get(code(row));
+        }
+
+        /**
+         * @param row The row index
+         * @return The dictionary code of the value
+         */
+        public int code(int row) {
+            checkIndex(row);
+            return codes.get(row);
+        }
+
+        /**
+         * @return The number of distinct values
+         */
+        public int cardinality() {
+            return dictionary.size();
+        }
+
+        /**
+         * @param code The dictionary code
+         * @return The value with this code
+         */
+        public String value(int code) {
+            return dictionary.get(code);
+        }
+
+        @Override
+        public String text(int row) {
+            return isMissing(row) ? null : get(row);
+        }
+
+        @Override
+        boolean append(String value) {
+            Integer code = lookup.get(value);
+            if (code == null) {
+                code = dictionary.size();
+                dictionary.add(value);
+                lookup.put(value, code);
+            }
+            codes.add(code);
+            size++;
+            return true;
+        }
+
+        @Override
+        void freeze() {
+            super.freeze();
+            // the lookup is only needed while loading
+            lookup = null;
+        }
+    }
+
+    /**
+     * Growable int storage, on or off heap
+     */
+    private static class Ints {
+        private int[] heap;
+        private IntBuffer direct;
+        private int size;
+
+        Ints(boolean offHeap) {
+            if (offHeap) direct = Buffers.ints(1024);
+            else heap = new int[1024];
+        }
+
+        void add(int value) {
+            if (direct == null) {
+                if (size == heap.length)
+                    heap = Arrays.copyOf(heap, size + (size >> 1));
+                heap[size++] = value;
+            } else {
+                if (size == direct.capacity())
+                    direct = (IntBuffer) Buffers.ints(size + (size >> 1)).put((IntBuffer) direct.flip());
+                direct.put(size++, value);
+                direct.position(size);
+            }
+        }
+
+        int get(int i) {
+            return direct == null ? heap[i] : direct.get(i);
+        }
+    }
+
+    /**
+     * Growable long storage, on or off heap
+     */
+    private static class Longs {
+        private long[] heap;
+        private LongBuffer direct;
+        private int size;
+
+        Longs(boolean offHeap) {
+            if (offHeap) direct = Buffers.longs(1024);
+            else heap = new long[1024];
+        }
+
+        void add(long value) {
+            if (direct == null) {
+                if (size == heap.length)
+                    heap = Arrays.copyOf(heap, size + (size >> 1));
+                heap[size++] = value;
+            } else {
+                if (size == direct.capacity())
+                    direct = (LongBuffer) Buffers.longs(size + (size >> 1)).put((LongBuffer) direct.flip());
+                direct.put(size++, value);
+                direct.position(size);
+            }
+        }
+
+        long get(int i) {
+            return direct == null ? heap[i] : direct.get(i);
+        }
+    }
+
+    /**
+     * Growable double storage, on or off heap
+     */
+    private static class Doubles {
+        private double[] heap;
+        private DoubleBuffer direct;
+        private int size;
+
+        Doubles(boolean offHeap) {
+            if (offHeap) direct = Buffers.doubles(1024);
+            else heap = new double[1024];
+        }
+
+        void add(double value) {
+            if (direct == null) {
+                if (size == heap.length)
+                    heap = Arrays.copyOf(heap, size + (size >> 1));
+                heap[size++] = value;
+            } else {
+                if (size == direct.capacity())
+                    direct = (DoubleBuffer) Buffers.doubles(size + (size >> 1)).put((DoubleBuffer) direct.flip());
+                direct.put(size++, value);
+                direct.position(size);
+            }
+        }
+
+        double get(int i) {
+            return direct == null ? heap[i] : direct.get(i);
+        }
+    }
+
+    private static class Buffers {
+        static IntBuffer ints(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        static LongBuffer longs(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+        }
+        static DoubleBuffer doubles(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * Number checks which avoid throwing exceptions for values which do not fit a type
+     */
+    private static class Numbers {
+        static boolean isInt(String s) {
+            if (!isLong(s))
+                return false;
+            long value = parseLong(s);
+            return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+        }
+
+        static boolean isLong(String s) {
+            int len = s.length();
+            boolean negative = s.charAt(0) == '-';
+            int i = negative || s.charAt(0) == '+' ? 1 : 0;
+            int digits = len - i;
+            if (digits == 0 || digits > 19 || leadingZero(s, i))
+                return false;
+            for (int j = i; j < len; j++) {
+                char c = s.charAt(j);
+                if (c < '0' || c > '9')
+                    return false;
+            }
+            // 18 digits always fit in a long, 19 digits up to the bound of its sign
+            return digits < 19 || s.substring(i).compareTo(negative ? "9223372036854775808" : "9223372036854775807") <= 0;
+        }
+
+        static long parseLong(String s) {
+            int len = s.length();
+            boolean negative = s.charAt(0) == '-';
+            int i = negative || s.charAt(0) == '+' ? 1 : 0;
+            // accumulate negatively so Long.MIN_VALUE does not overflow
+            long value = 0;
+            for (; i < len; i++)
+                value = value * 10 - (s.charAt(i) - '0');
+            return negative ? value : -value;
+        }
+
+        /**
+         * @return Whether an integer reads back as written, which it does unless it has a plus sign or is -0
+         */
+        static boolean canonical(String s) {
+            return s.charAt(0) != '+' && !s.equals("-0");
+        }
+
+        /**
+         * Codes such as zip codes and ids which start with a zero are text, they would lose the zero as numbers
+         */
+        private static boolean leadingZero(String s, int i) {
+            return i + 1 < s.length() && s.charAt(i) == '0' && s.charAt(i + 1) >= '0' && s.charAt(i + 1) <= '9';
+        }
+
+        static boolean isDouble(String s) {
+            boolean digits = false;
+            int len = s.length();
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= '0' && c <= '9') digits = true;
+                else if (c != '-' && c != '+' && c != '.' && c != 'e' && c != 'E') return false;
+            }
+            if (!digits || leadingZero(s, s.charAt(0) == '-' || s.charAt(0) == '+' ? 1 : 0))
+                return false;
+            try {
+                Double.parseDouble(s);
+                return true;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io.oreto.jackson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Minimal csv tokenizer which only creates Strings for the columns that are kept.
+ * Follows the same rules as the reader Csv configures: '#' comment lines and blank lines are skipped,
+ * spaces around values are trimmed and "" escapes a quote inside a quoted value.
+ */
+final class CsvTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final boolean quote;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean eof;
+
+    /**
+     * Constructor
+     * @param reader The csv Reader
+     * @param quote true if quoted values are recognized
+     */
+    CsvTokenizer(Reader reader, boolean quote) {
+        this.reader = reader;
+        this.quote = quote;
+    }
+
+    /**
+     * Read the next record
+     * @param keep The columns to create values for, null to keep every column.
+     *             Columns past the end of the array are skipped.
+     * @param values Receives the value of each column, null for the skipped columns
+     * @return The number of columns in the record, or -1 when there are no more records
+     * @throws IOException If the csv cannot be read
+     */
+    int next(boolean[] keep, List<String> values) throws IOException {
+        values.clear();
+        int c;
+        while (true) {
+            c = peek();
+            if (c < 0)
+                return -1;
+            else if (c == '\n' || c == '\r')
+                position++;
+            else if (c == '#')
+                skipLine();
+            else
+                break;
+        }
+
+        int column = 0;
+        while (true) {
+            values.add(field(keep == null || (column < keep.length && keep[column])));
+            column++;
+            c = peek();
+            if (c == ',') {
+                position++;
+            } else {
+                if (c == '\r') {
+                    position++;
+                    c = peek();
+                }
+                if (c == '\n')
+                    position++;
+                return column;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String field(boolean capture) throws IOException {
+        int c = peek();
+        while (c == ' ' || c == '\t') {
+            position++;
+            c = peek();
+        }
+        if (quote && c == '"') {
+            position++;
+            return quoted(capture);
+        }
+
+        field.setLength(0);
+        while (position < limit || fill()) {
+            int start = position;
+            while (position < limit) {
+                char ch = buffer[position];
+                if (ch == ',' || ch == '\n' || ch == '\r')
+                    break;
+                position++;
+            }
+            if (capture)
+                field.append(buffer, start, position - start);
+            if (position < limit)
+                break;
+        }
+        if (!capture)
+            return null;
+        int end = field.length();
+        while (end > 0 && (field.charAt(end - 1) == ' ' || field.charAt(end - 1) == '\t'))
+            end--;
+        return field.substring(0, end);
+    }
+
+    private String quoted(boolean capture) throws IOException {
+        field.setLength(0);
+        while (position < limit || fill()) {
+            int start = position;
+            while (position < limit && buffer[position] != '"')
+                position++;
+            if (capture)
+                field.append(buffer, start, position - start);
+            if (position < limit) {
+                position++;
+                if (peek() != '"')
+                    break;
+                // escaped quote
+                position++;
+                if (capture)
+                    field.append('"');
+            }
+        }
+        // ignore anything between the closing quote and the delimiter
+        int c = peek();
+        while (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+            position++;
+            c = peek();
+        }
+        return capture ? field.toString() : null;
+    }
+
+    private void skipLine() throws IOException {
+        int c = peek();
+        while (c >= 0 && c != '\n' && c != '\r') {
+            position++;
+            c = peek();
+        }
+    }
+
+    private int peek() throws IOException {
+        return position < limit || fill() ? buffer[position] : -1;
+    }
+
+    private boolean fill() throws IOException {
+        if (eof)
+            return false;
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        eof = read < 0;
+        return limit > 0 || (!eof && fill());
+    }
+}
@@ -0,0 +1,278 @@
+package io.oreto.jackson;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Opt-in profiler of the Fields DSL which aggregates the cost of each expression: calls, average and max time,
+ * nodes visited and removed and the bytes allocated by the rendering thread.
+ * Renders slower than the threshold are logged along with their plan.
+ * Only a sample of the renders is measured, so it can stay on in production.
+ * <pre>
+ *     DslProfiler profiler = new DslProfiler().sampleRate(0.01).slowThreshold(20, TimeUnit.MILLISECONDS);
+ *     Jackson5.supply(profiler);
+ *     ...
+ *     profiler.stats().forEach((dsl, stats) -&gt; System.out.println(dsl + " " + stats));
+ * </pre>
+ */
+public class DslProfiler {
+    /**
+     * Key under which expressions are aggregated once maxExpressions distinct ones have been seen
+     */
+    public static final String OTHER = "(other)";
+
+    private static final Logger logger = Logger.getLogger(DslProfiler.class.getName());
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private volatile double sampleRate = 1.0;
+    private volatile long slowNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private volatile int maxExpressions = 1000;
+    private volatile Consumer<String> log = message -> logger.log(Level.WARNING, message);
+
+    /**
+     * Set the fraction of renders which are measured
+     * @param sampleRate Between 0 and 1, defaults to 1 meaning every render
+     * @return This profiler
+     */
+    public DslProfiler sampleRate(double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1)
+            throw new IllegalArgumentException("sampleRate must be between 0 and 1");
+        this.sampleRate = sampleRate;
+        return this;
+    }
+
+    /**
+     * Set the latency over which a measured render is logged with its plan
+     * @param threshold The threshold, defaults to 100 milliseconds
+     * @param unit The unit of the threshold
+     * @return This profiler
+     */
+    public DslProfiler slowThreshold(long threshold, TimeUnit unit) {
+        this.slowNanos = unit.toNanos(threshold);
+        return this;
+    }
+
+    /**
+     * Set the number of distinct expressions which are aggregated separately, so hostile clients
+     * cannot grow the statistics without bound. Further expressions are aggregated under {@link #OTHER}.
+     * @param maxExpressions The number of expressions, defaults to 1000
+     * @return This profiler
+     */
+    public DslProfiler maxExpressions(int maxExpressions) {
+        this.maxExpressions = maxExpressions;
+        return this;
+    }
+
+    /**
+     * Set where slow renders are logged
+     * @param log Receives the message of each slow render, defaults to a java.util.logging warning
+     * @return This profiler
+     */
+    public DslProfiler log(Consumer<String> log) {
+        this.log = log;
+        return this;
+    }
+
+    /**
+     * @return The statistics of each canonical expression, the most expensive in total first
+     */
+    public Map<String, Stats> stats() {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(stats.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> it) -> it.getValue().total.sum()).reversed());
+        Map<String, Stats> sorted = new LinkedHashMap<>();
+        entries.forEach(it -> sorted.put(it.getKey(), it.getValue()));
+        return sorted;
+    }
+
+    /**
+     * Forget every statistic
+     */
+    public void reset() {
+        stats.clear();
+    }
+
+    /**
+     * @return true if the next render should be measured
+     */
+    boolean sample() {
+        double rate = sampleRate;
+        return rate >= 1 || (rate > 0 && ThreadLocalRandom.current().nextDouble() < rate);
+    }
+
+    /**
+     * Record a measured render
+     * @param fields The fields of the render
+     * @param nanos How long it took
+     * @param visited JSON objects visited
+     * @param removed Fields and array elements removed
+     * @param allocated Bytes allocated by the thread, negative when unknown
+     * @param plan Describes the plan of the fields, only called for slow renders
+     */
+    void record(IFields fields, long nanos, long visited, long removed, long allocated, Supplier<String> plan) {
+        String dsl = canonical(fields);
+        Stats stats = this.stats.get(dsl);
+        if (stats == null) {
+            String key = this.stats.size() < maxExpressions ? dsl : OTHER;
+            stats = this.stats.computeIfAbsent(key, it -> new Stats());
+        }
+        stats.record(nanos, visited, removed, allocated);
+        if (nanos > slowNanos) {
+            log.accept(String.format("slow fields %s took %.3f ms, visited %d removed %d allocated %d bytes%n%s"
+                    , dsl, nanos / 1e6, visited, removed, allocated, plan.get()));
+        }
+    }
+
+    /**
+     * @return Bytes allocated so far by the current thread, negative when the JVM cannot tell
+     */
+    static long allocatedBytes() {
+        try {
+            return Allocation.bytes();
+        } catch (LinkageError e) {
+            // no com.sun.management on this JVM
+            return -1;
+        }
+    }
+
+    /**
+     * Canonical text of the fields, so expressions which differ only by spacing are aggregated together
+     * @param fields The fields
+     * @return The canonical text
+     */
+    static String canonical(IFields fields) {
+        StringBuilder sb = new StringBuilder();
+        canonical(sb, "root", fields.root());
+        canonical(sb, "include", fields.include());
+        canonical(sb, "exclude", fields.exclude());
+        return sb.toString();
+    }
+
+    private static void canonical(StringBuilder sb, String kind, String dsl) {
+        if (Util.Str.isBlank(dsl))
+            return;
+        if (sb.length() > 0)
+            sb.append(' ');
+        sb.append(kind).append(':');
+        boolean space = true;
+        for (int i = 0; i < dsl.length(); i++) {
+            char c = dsl.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = true;
+            } else if (c == '{' || c == '}') {
+                sb.append(' ').append(c);
+                space = true;
+            } else {
+                if (space)
+                    sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+    }
+
+    /**
+     * The aggregated cost of one expression
+     */
+    public static class Stats {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder removed = new LongAdder();
+        private final LongAdder allocated = new LongAdder();
+
+        void record(long nanos, long visited, long removed, long allocated) {
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+            this.visited.add(visited);
+            this.removed.add(removed);
+            if (allocated > 0)
+                this.allocated.add(allocated);
+        }
+
+        /**
+         * @return The number of measured renders
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * @return The mean render time in nanoseconds
+         */
+        public double mean() {
+            long n = count();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        /**
+         * @return The longest render time in nanoseconds
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * @return The total JSON objects visited
+         */
+        public long visited() {
+            return visited.sum();
+        }
+
+        /**
+         * @return The total fields and array elements removed
+         */
+        public long removed() {
+            return removed.sum();
+        }
+
+        /**
+         * @return The total bytes allocated, 0 when the JVM cannot tell
+         */
+        public long allocated() {
+            return allocated.sum();
+        }
+
+        @Override
+        public String toString() {
+            long n = Math.max(count(), 1);
+            return String.format("count=%d mean=%.3fms max=%.3fms visited/call=%d removed/call=%d allocated/call=%d"
+                    , count(), mean() / 1e6, max() / 1e6, visited() / n, removed() / n, allocated() / n);
+        }
+    }
+
+    /**
+     * Reads the bytes allocated by a thread where the JVM supports it
+     */
+    private static class Allocation {
+        private static final com.sun.management.ThreadMXBean bean = bean();
+
+        private static com.sun.management.ThreadMXBean bean() {
+            try {
+                java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+                if (bean instanceof com.sun.management.ThreadMXBean) {
+                    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+                    if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled())
+                        return threads;
+                }
+            } catch (Throwable ignored) {
+                // not a HotSpot JVM
+            }
+            return null;
+        }
+
+        static long bytes() {
+            return bean == null ? -1 : bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+    }
+}
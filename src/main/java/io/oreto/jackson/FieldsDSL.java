@@ -1,12 +1,17 @@
 package io.oreto.jackson;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.std.BeanSerializerBase;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import static io.oreto.jackson.Util.Str;
 
@@ -14,17 +19,71 @@ import static io.oreto.jackson.Util.Str;
  * Class to convert Fields DSL into a JsonNode which adheres to inclusions/exclusions specified in the DSL
  */
 class FieldsDSL {
-    private static final Map<String, MultiMap> dslCache = new HashMap<>();
-    private static final Map<String, Map.Entry<String, Subset>> indexCache = new HashMap<>();
+    /**
+     * Maximum number of parsed DSL strings which are cached, the oldest are evicted first
+     */
+    static final int DSL_CACHE_SIZE = 2048;
+
+    /**
+     * The recursive descent selector, **.id selects id at any depth
+     */
+    static final String DEEP = "**";
+
+    // parsed selections are read-only once cached, so they are shared by every thread
+    private static final Map<String, MultiMap> dslCache = new ConcurrentHashMap<>();
+    private static final Queue<String> dslOrder = new ConcurrentLinkedQueue<>();
+    private static final Map<String, Optional<Map.Entry<String, Subset>>> indexCache = new ConcurrentHashMap<>();
+
+    /**
+     * Forget every parsed DSL
+     */
+    static void clearCaches() {
+        dslCache.clear();
+        dslOrder.clear();
+        indexCache.clear();
+    }
 
     private final ObjectMapper mapper;
+    private final Jackson5 owner;
+    // a copy of the mapper which can walk within a traversal budget, made on first use
+    private volatile ObjectMapper budgetMapper;
 
     /**
      * Constructor
      * @param mapper ObjectMapper to use for this renderer
      */
     FieldsDSL(ObjectMapper mapper) {
+        this(mapper, null);
+    }
+
+    /**
+     * Constructor
+     * @param mapper ObjectMapper to use for this renderer
+     * @param owner The Jackson5 whose metrics are notified, may be null
+     */
+    FieldsDSL(ObjectMapper mapper, Jackson5 owner) {
         this.mapper = mapper;
+        this.owner = owner;
+    }
+
+    private Jackson5Metrics metrics() {
+        return owner == null ? null : owner.metrics();
+    }
+
+    private FieldsLimits limits() {
+        return owner == null ? null : owner.limits();
+    }
+
+    private TraversalBudget budget() {
+        return owner == null ? null : owner.budget();
+    }
+
+    private DslProfiler profiler() {
+        return owner == null ? null : owner.profiler();
+    }
+
+    private String name() {
+        return owner == null ? Jackson5.DEFAULT_NAME : owner.getName();
     }
 
     /**
@@ -36,7 +95,41 @@ class FieldsDSL {
         if (o instanceof IFields) {
             return json(o, (IFields) o);
         }
-        return mapper.valueToTree(o);
+        return tree(o);
+    }
+
+    /**
+     * Convert Object to a JsonNode object, walking no further than the traversal budget of the owning Jackson5
+     * @param o Object to convert
+     * @return JsonNode
+     * @throws TraversalBudgetExceeded If a budget runs out and the policy is to throw
+     */
+    private JsonNode tree(Object o) throws JsonProcessingException {
+        TraversalBudget budget = budget();
+        if (budget == null || o == null || o instanceof JsonNode)
+            return Async.tree(mapper, o);
+        ObjectMapper budgetMapper = this.budgetMapper;
+        if (budgetMapper == null)
+            this.budgetMapper = budgetMapper = Traversal.mapper(mapper);
+        return Traversal.tree(budgetMapper, o, budget);
+    }
+
+    /**
+     * Serialize an Object to the tokens of the JsonNode {@link #json(Object)} converts it to, without building the tree
+     * @param o Object to serialize
+     * @return The tokens
+     * @throws TraversalBudgetExceeded If a budget runs out and the policy is to throw
+     */
+    TokenBuffer tokens(Object o) throws JsonProcessingException {
+        if (o instanceof IFields)
+            return Async.tokens(mapper, json(o));
+        TraversalBudget budget = budget();
+        if (budget == null || o == null || o instanceof JsonNode)
+            return Async.tokens(mapper, o);
+        ObjectMapper budgetMapper = this.budgetMapper;
+        if (budgetMapper == null)
+            this.budgetMapper = budgetMapper = Traversal.mapper(mapper);
+        return Traversal.tokens(budgetMapper, o, budget);
     }
 
     /**
@@ -44,31 +137,69 @@ class FieldsDSL {
      * @param o Object to convert
      * @param fields Fields representing the object fields which are converted
      * @return JsonNode
+     * @throws FieldsLimitExceeded If an expression is over the limits of the owning Jackson5
      */
     JsonNode json(Object o, IFields fields) throws JsonProcessingException {
+        FieldsLimits limits = limits();
+        if (limits != null)
+            limits.check(fields);
+        DslProfiler profiler = profiler();
+        if (profiler == null || o == null || !profiler.sample())
+            return render(o, fields, null);
+        long allocated = DslProfiler.allocatedBytes();
+        long start = System.nanoTime();
+        Counts counts = new Counts();
+        JsonNode json = render(o, fields, counts);
+        long nanos = System.nanoTime() - start;
+        profiler.record(fields, nanos, counts.visited, counts.pruned
+                , allocated < 0 ? -1 : DslProfiler.allocatedBytes() - allocated
+                , () -> plan(fields));
+        return json;
+    }
+
+    /**
+     * Convert Object to a JsonNode object
+     * @param o Object to convert
+     * @param fields Fields representing the object fields which are converted
+     * @param counts Counts of the visited and pruned nodes, null unless the caller counts them
+     * @return JsonNode
+     */
+    private JsonNode render(Object o, IFields fields, Counts counts) throws JsonProcessingException {
         if (o == null) return mapper.valueToTree(null);
+        Class<?> type = o.getClass();
         // if root is present, use the specified root.
         if (Str.isNotBlank(fields.root())) {
-            o = useRoot(o, fields.root());
+            o = useRoot(o, fields.root(), type);
         }
         boolean inclusions = Str.isNotBlank(fields.include());
         boolean exclusions = Str.isNotBlank(fields.exclude());
         if (!exclusions && !inclusions) {
             // if there are no includes or excludes just render normally
-            return o instanceof ObjectNode ? (JsonNode) o : mapper.valueToTree(o);
+            return o instanceof ObjectNode ? (JsonNode) o : tree(o);
         } else {
-            List<ObjectNode> json = initTree(o);
+            MultiMap include = inclusions ? selector(fields.include()) : null;
+            List<ObjectNode> json = inclusions ? project(o, include) : null;
+            if (json == null)
+                json = initTree(o);
+            Jackson5Metrics metrics = metrics();
+            Flights.Span span = Flights.begin(Flights.Kind.PRUNE);
+            if (counts == null && (metrics != null || span != null))
+                counts = new Counts();
             if (inclusions && exclusions) {
                 // both inclusions and exclusions
-                prune(json, Str.EMPTY, selector(fields.include()), true);
-                prune(json, Str.EMPTY, selector(fields.exclude()), false);
+                prune(json, Str.EMPTY, include, true, counts, null);
+                prune(json, Str.EMPTY, selector(fields.exclude()), false, counts, null);
             } else if (inclusions) {
                 // only inclusions
-                prune(json, Str.EMPTY, selector(fields.include()), true);
+                prune(json, Str.EMPTY, include, true, counts, null);
             } else {
                 // only exclusions
-                prune(json, Str.EMPTY, selector(fields.exclude()), false);
+                prune(json, Str.EMPTY, selector(fields.exclude()), false, counts, null);
             }
+            if (metrics != null)
+                metrics.nodes(name(), counts.visited, counts.pruned);
+            if (span != null)
+                span.end(name(), type, Flights.dsl(fields), counts.visited, counts.pruned);
             return json.size() == 1 ? json.get(0) : toArrayNode(json);
         }
     }
@@ -90,11 +221,14 @@ class FieldsDSL {
      * Change the JSON tree root
      * @param o The object to convert to json
      * @param root The new root of the tree
+     * @param type The class being rendered, for the flight recorder
      * @return The resulting JSON tree starting at the specified root
      */
-    private Object useRoot(Object o, String root) {
+    private Object useRoot(Object o, String root, Class<?> type) throws JsonProcessingException {
+        Flights.Span span = Flights.begin(Flights.Kind.ROOT);
+        String dsl = root;
         List<JsonNode> nodes = new ArrayList<>();
-        Object node = mapper.valueToTree(o);
+        Object node = tree(o);
         List<ObjectNode> elements = new ArrayList<>();
 
         if (node instanceof ObjectNode) {
@@ -135,6 +269,8 @@ class FieldsDSL {
             nodes.forEach(jsonArray::add);
             o = jsonArray;
         }
+        if (span != null)
+            span.end(name(), type, dsl, elements.size(), size);
         return o;
     }
 
@@ -157,8 +293,8 @@ class FieldsDSL {
             }
         } else {
             JsonNode element = o instanceof String
-                    ? mapper.readTree((String) o)
-                    : mapper.valueToTree(o);
+                    ? Async.readTree(mapper, (String) o)
+                    : tree(o);
             if (element.isArray()) {
                 for (JsonNode jsonNode : element) {
                     if (jsonNode instanceof ObjectNode)
@@ -171,14 +307,119 @@ class FieldsDSL {
         return json;
     }
 
+    /**
+     * Convert records to trees which hold only the included top level properties, so the values of the others
+     * are never serialized. The trees are pruned as usual afterwards.
+     * @param o The object to convert, a record or a collection of records
+     * @param include The selection of the include DSL
+     * @return The root level ObjectNodes, or null if the object must be converted whole
+     * @throws JsonProcessingException If a property cannot be serialized
+     */
+    private List<ObjectNode> project(Object o, MultiMap include) throws JsonProcessingException {
+        Collection<?> records = o instanceof Collection ? (Collection<?>) o : Collections.singletonList(o);
+        Object first = records.isEmpty() ? null : records.iterator().next();
+        if (first == null || !Records.isRecord(first.getClass()))
+            return null;
+        SelectedFields selected = include.get(Str.EMPTY);
+        SerializationConfig config = mapper.getSerializationConfig();
+        // globs, budgets, views and filters all need the whole tree
+        if (selected == null
+                || selected.propertyGlobs != null
+                || selected.objectGlobs != null
+                || selected.objects.containsKey(DEEP)
+                || budget() != null
+                || config.getActiveView() != null
+                || config.getFilterProvider() != null)
+            return null;
+        SerializerProvider provider = mapper.getSerializerProviderInstance();
+        List<ObjectNode> json = new ArrayList<>(records.size());
+        for (Object record : records) {
+            ObjectNode node = record == null || !Records.isRecord(record.getClass())
+                    ? null
+                    : project(record, selected, provider);
+            if (node == null)
+                return null;
+            json.add(node);
+        }
+        return json;
+    }
+
+    /**
+     * Serialize the selected properties of a record, as its bean serializer would
+     * @return The tree, or null if some selected name is not a property or the record has an object id
+     */
+    private ObjectNode project(Object record
+            , SelectedFields selected
+            , SerializerProvider provider) throws JsonProcessingException {
+        JsonSerializer<Object> serializer = provider.findTypedValueSerializer(record.getClass(), true, null);
+        // a typed record is wrapped with its type serializer, and falls back with anything else which is not a bean
+        if (!(serializer instanceof BeanSerializerBase) || serializer.usesObjectId())
+            return null;
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        if (mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+            buffer = buffer.forceUseOfBigDecimal(true);
+        JsonGenerator gen = Async.cancellable(buffer);
+        int matched = 0;
+        try {
+            gen.writeStartObject(record);
+            for (Iterator<PropertyWriter> it = serializer.properties(); it.hasNext(); ) {
+                PropertyWriter property = it.next();
+                if (selected.contains(property.getName())) {
+                    property.serializeAsField(record, gen, provider);
+                    matched++;
+                }
+            }
+            gen.writeEndObject();
+            if (matched < selected.properties.size() + selected.objects.size())
+                return null;
+            return mapper.readTree(buffer.asParser());
+        } catch (JsonProcessingException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // a TokenBuffer does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
     /**
      * Convert the DSL string into a Map representing the path and the selected fields
      * @param dsl The DSL string
      * @return A multi map @{code Map<String, SelectedFields>}
      */
     protected MultiMap selector(String dsl) {
-        if (dslCache.containsKey(dsl))
-            return dslCache.get(dsl);
+        MultiMap pathMap = dslCache.get(dsl);
+        Jackson5Metrics metrics = metrics();
+        if (pathMap != null) {
+            if (metrics != null)
+                metrics.cache(name(), Jackson5Metrics.Cache.HIT);
+            return pathMap;
+        }
+        if (metrics != null)
+            metrics.cache(name(), Jackson5Metrics.Cache.MISS);
+        Flights.Span span = Flights.begin(Flights.Kind.COMPILE);
+        pathMap = parse(dsl);
+        if (span != null)
+            span.end(name(), null, dsl, dsl.length(), pathMap.size());
+        if (dslCache.putIfAbsent(dsl, pathMap) == null) {
+            dslOrder.add(dsl);
+            // evict the oldest selections once the cache is full
+            while (dslCache.size() > DSL_CACHE_SIZE) {
+                String eldest = dslOrder.poll();
+                if (eldest == null)
+                    break;
+                if (dslCache.remove(eldest) != null && metrics != null)
+                    metrics.cache(name(), Jackson5Metrics.Cache.EVICTION);
+            }
+        }
+        return pathMap;
+    }
+
+    /**
+     * Parse the DSL string without consulting the cache
+     * @param dsl The DSL string
+     * @return A multi map @{code Map<String, SelectedFields>}
+     */
+    MultiMap parse(String dsl) {
         MultiMap pathMap = new MultiMap();
         StringBuilder sb = new StringBuilder();
         Stack<String> address = new Stack<>();
@@ -219,10 +460,69 @@ class FieldsDSL {
                     break;
             }
         }
-        dslCache.put(dsl, pathMap);
+        pathMap.compile();
         return pathMap;
     }
 
+    /**
+     * Flatten the DSL into the dotted paths of the selected fields, which is how csv columns are named
+     * @param dsl The DSL string
+     * @return The selected paths
+     */
+    List<String> paths(String dsl) {
+        List<String> paths = new ArrayList<>();
+        paths(selector(dsl), Str.EMPTY, paths);
+        return paths;
+    }
+
+    private void paths(MultiMap pathMap, String path, List<String> paths) {
+        SelectedFields selectedFields = pathMap.get(path);
+        if (selectedFields == null)
+            return;
+        selectedFields.properties.keySet().forEach(property -> {
+            if (!property.isEmpty())
+                paths.add(resolveAddress(path, property));
+        });
+        selectedFields.objects.values().forEach(fieldObject -> {
+            String address = resolveAddress(path, fieldObject.field);
+            if (fieldObject.parent && pathMap.get(address) != null)
+                paths(pathMap, address, paths);
+            else
+                paths.add(address);
+        });
+    }
+
+    /**
+     * Describe how the fields are applied: for each path of each DSL, the selected properties and objects
+     * @param fields The fields
+     * @return The plan, one path per line
+     */
+    String plan(IFields fields) {
+        StringBuilder sb = new StringBuilder();
+        plan(sb, "root", fields.root());
+        plan(sb, "include", fields.include());
+        plan(sb, "exclude", fields.exclude());
+        return sb.toString();
+    }
+
+    private void plan(StringBuilder sb, String kind, String dsl) {
+        if (Str.isBlank(dsl))
+            return;
+        sb.append(kind).append(":\n");
+        selector(dsl).map.forEach((path, selectedFields) -> {
+            List<String> selected = new ArrayList<>();
+            selectedFields.properties.keySet().forEach(property -> {
+                if (!property.isEmpty())
+                    selected.add(property);
+            });
+            selectedFields.objects.values().forEach(fieldObject -> selected.add(fieldObject.field
+                    + (fieldObject.subset == null ? Str.EMPTY : fieldObject.subset.getValue())
+                    + (fieldObject.parent ? "{..}" : Str.EMPTY)));
+            sb.append("  ").append(path.isEmpty() ? "." : path).append(" -> ").append(String.join(" ", selected))
+                    .append('\n');
+        });
+    }
+
     /**
      * Handle an open bracket level change from parent to child
      * @param sb The current string of fields
@@ -332,59 +632,234 @@ class FieldsDSL {
      * @param path The path to of the current fields
      * @param pathMap Map representing the path and the selected fields
      * @param include True if the fields are being included, otherwise excluded
+     * @throws JsonProcessingException If the async call running on this thread is cancelled
      */
     protected void prune(List<ObjectNode> nodes
             , String path
             , MultiMap pathMap
-            , boolean include) {
+            , boolean include) throws JsonProcessingException {
+        prune(nodes, path, pathMap, include, null, null);
+    }
+
+    /**
+     * Prunes the tree according to the pathMap selected fields
+     * @param nodes The nodes being pruned
+     * @param path The path to of the current fields
+     * @param pathMap Map representing the path and the selected fields
+     * @param include True if the fields are being included, otherwise excluded
+     * @param counts Counts of the visited and pruned nodes, null when not counting
+     * @param deep Names selected at any depth by ** at this level or above, null if none
+     * @throws JsonProcessingException If the async call running on this thread is cancelled
+     */
+    private void prune(List<ObjectNode> nodes
+            , String path
+            , MultiMap pathMap
+            , boolean include
+            , Counts counts
+            , Deep deep) throws JsonProcessingException {
+        Async.checkpoint();
         SelectedFields selectedFields = pathMap.get(path);
         Map<String, String> properties = selectedFields.properties;
+        if (selectedFields.deep != null)
+            deep = new Deep(selectedFields.deep, deep);
 
         for (ObjectNode node : nodes) {
+            int size = counts == null ? 0 : node.size();
             if (include) {
                 List<String> compliment = new ArrayList<>();
-                for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
-                    String name = it.next();
-                    if (!selectedFields.contains(name))
+                for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> field = it.next();
+                    String name = field.getKey();
+                    if (!selectedFields.contains(name)
+                            && (deep == null || !deep.matches(name) && !keepDeep(field.getValue(), deep, counts)))
                         compliment.add(name);
                 }
                 node.remove(compliment);
             } else {
                 node.remove(properties.keySet());
+                if (selectedFields.propertyGlobs != null || deep != null) {
+                    List<String> matched = new ArrayList<>();
+                    for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                        Map.Entry<String, JsonNode> field = it.next();
+                        String name = field.getKey();
+                        if (selectedFields.matchesProperty(name) || deep != null && deep.matches(name))
+                            matched.add(name);
+                        else if (deep != null && !selectedFields.containsObject(name))
+                            // objects selected by name are pruned below, everything else only loses the deep names
+                            dropDeep(field.getValue(), deep, counts);
+                    }
+                    node.remove(matched);
+                }
+            }
+            if (counts != null) {
+                counts.visited++;
+                counts.pruned += size - node.size();
             }
         }
         for (FieldObject address : selectedFields.objects.values()) {
-            Map.Entry<String, Subset> subset = address.subset;
+            if (address.deep)
+                continue;
             for (ObjectNode node : nodes) {
-                JsonNode element = node.get(address.field);
-                if (address.parent) {
-                    List<ObjectNode> newNodes = new ArrayList<>();
-                    if (element instanceof ArrayNode) {
-                        ArrayNode jsonArray = (ArrayNode) element;
-                        if (subset == null)
-                            jsonArray.forEach(it -> newNodes.add((ObjectNode) it));
-                        else {
-                            subset.getValue().size(jsonArray.size()).apply(newNodes, jsonArray);
-                            if (include)
-                                subset.getValue().size(jsonArray.size()).removeCompliment(jsonArray);
-                        }
-                    } else if (element instanceof ObjectNode) {
-                        newNodes.add((ObjectNode) element);
-                    }
-                    prune(newNodes, resolveAddress(path, address.field), pathMap, include);
+                if (address.glob) {
+                    List<String> names = new ArrayList<>();
+                    node.fieldNames().forEachRemaining(name -> {
+                        if (name.startsWith(address.prefix))
+                            names.add(name);
+                    });
+                    for (String name : names)
+                        prune(node.get(name), path, address, pathMap, include, counts, deep);
                 } else {
-                    if (element instanceof ArrayNode && subset != null) {
-                        ArrayNode jsonArray = (ArrayNode) node.get(address.field);
-                        if (include)
-                            subset.getValue().size(jsonArray.size()).removeCompliment(jsonArray);
-                        else
-                            subset.getValue().size(jsonArray.size()).remove(jsonArray);
-                    }
+                    prune(node.get(address.field), path, address, pathMap, include, counts, deep);
+                }
+            }
+        }
+    }
+
+    /**
+     * Prunes the element selected by a field object
+     * @param element The selected element, may be null
+     * @param path The path to of the current fields
+     * @param address The field object
+     * @param pathMap Map representing the path and the selected fields
+     * @param include True if the fields are being included, otherwise excluded
+     * @param counts Counts of the visited and pruned nodes, null when not counting
+     * @param deep Names selected at any depth, null if none
+     */
+    private void prune(JsonNode element
+            , String path
+            , FieldObject address
+            , MultiMap pathMap
+            , boolean include
+            , Counts counts
+            , Deep deep) throws JsonProcessingException {
+        Map.Entry<String, Subset> subset = address.subset;
+        if (address.parent) {
+            List<ObjectNode> newNodes = new ArrayList<>();
+            if (element instanceof ArrayNode) {
+                ArrayNode jsonArray = (ArrayNode) element;
+                if (subset == null)
+                    jsonArray.forEach(it -> newNodes.add((ObjectNode) it));
+                else {
+                    int size = jsonArray.size();
+                    subset.getValue().size(size).apply(newNodes, jsonArray);
+                    if (include)
+                        subset.getValue().size(size).removeCompliment(jsonArray);
+                    if (counts != null)
+                        counts.pruned += size - jsonArray.size();
                 }
+            } else if (element instanceof ObjectNode) {
+                newNodes.add((ObjectNode) element);
+            }
+            prune(newNodes, resolveAddress(path, address.field), pathMap, include, counts, deep);
+        } else {
+            if (element instanceof ArrayNode && subset != null) {
+                ArrayNode jsonArray = (ArrayNode) element;
+                int size = jsonArray.size();
+                if (include)
+                    subset.getValue().size(size).removeCompliment(jsonArray);
+                else
+                    subset.getValue().size(size).remove(jsonArray);
+                if (counts != null)
+                    counts.pruned += size - jsonArray.size();
             }
         }
     }
 
+    /**
+     * Include only the deep names within an element which was not selected by name
+     * @param element The element
+     * @param deep Names selected at any depth
+     * @param counts Counts of the visited and pruned nodes, null when not counting
+     * @return true if anything is left of the element, otherwise it should be removed too
+     */
+    private boolean keepDeep(JsonNode element, Deep deep, Counts counts) {
+        if (element instanceof ObjectNode) {
+            ObjectNode node = (ObjectNode) element;
+            List<String> compliment = new ArrayList<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                if (!deep.matches(field.getKey()) && !keepDeep(field.getValue(), deep, counts))
+                    compliment.add(field.getKey());
+            }
+            node.remove(compliment);
+            if (counts != null) {
+                counts.visited++;
+                counts.pruned += compliment.size();
+            }
+            return node.size() > 0;
+        }
+        if (element instanceof ArrayNode) {
+            ArrayNode array = (ArrayNode) element;
+            for (int i = array.size() - 1; i >= 0; i--) {
+                if (!keepDeep(array.get(i), deep, counts)) {
+                    array.remove(i);
+                    if (counts != null)
+                        counts.pruned++;
+                }
+            }
+            return array.size() > 0;
+        }
+        // values are only kept by their name
+        return false;
+    }
+
+    /**
+     * Exclude the deep names within an element at any depth
+     * @param element The element
+     * @param deep Names excluded at any depth
+     * @param counts Counts of the visited and pruned nodes, null when not counting
+     */
+    private void dropDeep(JsonNode element, Deep deep, Counts counts) {
+        if (element instanceof ObjectNode) {
+            ObjectNode node = (ObjectNode) element;
+            List<String> matched = new ArrayList<>();
+            for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = it.next();
+                if (deep.matches(field.getKey()))
+                    matched.add(field.getKey());
+                else
+                    dropDeep(field.getValue(), deep, counts);
+            }
+            node.remove(matched);
+            if (counts != null) {
+                counts.visited++;
+                counts.pruned += matched.size();
+            }
+        } else if (element instanceof ArrayNode) {
+            for (JsonNode it : element)
+                dropDeep(it, deep, counts);
+        }
+    }
+
+    /**
+     * The names selected by ** at each level on the way down, innermost first
+     */
+    private static class Deep {
+        final KeyMatcher matcher;
+        final Deep parent;
+
+        Deep(KeyMatcher matcher, Deep parent) {
+            this.matcher = matcher;
+            this.parent = parent;
+        }
+
+        boolean matches(String name) {
+            for (Deep deep = this; deep != null; deep = deep.parent) {
+                if (deep.matcher.matches(name))
+                    return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Counts of the work done by one render, kept only when metrics are enabled
+     */
+    private static class Counts {
+        long visited;
+        long pruned;
+    }
+
     /**
      * A map of each path and associated mapping of selected fields.
      */
@@ -406,6 +881,28 @@ class FieldsDSL {
         final SelectedFields get(String k) {
             return map.get(k);
         }
+        /**
+         * Compile the names below each ** into a matcher of the level which holds it
+         */
+        final void compile() {
+            map.forEach((path, selectedFields) -> {
+                if (selectedFields.objects.containsKey(DEEP)) {
+                    SelectedFields below = map.get(path.isEmpty() ? DEEP : path + "." + DEEP);
+                    if (below != null) {
+                        KeyMatcher deep = new KeyMatcher();
+                        below.properties.keySet().forEach(name -> {
+                            if (!name.isEmpty())
+                                deep.add(name);
+                        });
+                        below.objects.keySet().forEach(deep::add);
+                        selectedFields.deep = deep;
+                    }
+                }
+            });
+        }
+        final int size() {
+            return map.size();
+        }
     }
 
     /**
@@ -414,6 +911,11 @@ class FieldsDSL {
     static class SelectedFields {
         final LinkedHashMap<String, String> properties;
         final LinkedHashMap<String, FieldObject> objects;
+        // globs such as addr* or *, compiled so each key is matched once however many there are
+        KeyMatcher propertyGlobs;
+        KeyMatcher objectGlobs;
+        // names selected at any depth below this level by **
+        KeyMatcher deep;
 
         SelectedFields() {
            properties = new LinkedHashMap<>();
@@ -421,12 +923,23 @@ class FieldsDSL {
         }
         void addProperty(String property) {
             properties.put(property, property);
+            if (KeyMatcher.isGlob(property))
+                propertyGlobs = (propertyGlobs == null ? new KeyMatcher() : propertyGlobs).add(property);
         }
         void addObject(FieldObject fieldObject) {
             objects.put(fieldObject.field, fieldObject);
+            if (fieldObject.glob)
+                objectGlobs = (objectGlobs == null ? new KeyMatcher() : objectGlobs).add(fieldObject.field);
         }
         boolean contains(String field) {
-           return properties.containsKey(field) || objects.containsKey(field);
+           return properties.containsKey(field) || objects.containsKey(field)
+                   || matchesProperty(field) || objectGlobs != null && objectGlobs.matches(field);
+        }
+        boolean containsObject(String field) {
+            return objects.containsKey(field) || objectGlobs != null && objectGlobs.matches(field);
+        }
+        boolean matchesProperty(String field) {
+            return propertyGlobs != null && propertyGlobs.matches(field);
         }
     }
 
@@ -444,39 +957,29 @@ class FieldsDSL {
         final String field;
         final Map.Entry<String, Subset> subset;
         final boolean parent;
+        // ** selects names at any depth, other globs select every key with the prefix
+        final boolean deep;
+        final boolean glob;
+        final String prefix;
 
         private FieldObject(String field, boolean parent) {
             this.subset = parseIndex(field);
             this.field = subset == null ? field : subset.getKey();
             this.parent = parent;
+            this.deep = DEEP.equals(this.field);
+            this.glob = !deep && KeyMatcher.isGlob(this.field);
+            this.prefix = glob ? this.field.substring(0, this.field.indexOf('*')) : this.field;
         }
 
         protected Map.Entry<String, Subset> parseIndex(String property) {
-            if (indexCache.containsKey(property))
-                return indexCache.get(property);
-
-            Map.Entry<String, Subset> subsetEntry = null;
-            if (property.matches(".*\\[-?[0-9]+]$")) {
-                int start = property.indexOf('[');
-                String name = property.substring(0, start).trim();
-                String index = property.substring(start + 1, property.length() - 1).trim();
-                start = Integer.parseInt(index);
-                subsetEntry = new AbstractMap.SimpleEntry<>(name, Subset.of(start));
-            } else if (property.matches(".*\\[[0-9]*:[0-9]*]$")) {
-                int start = property.indexOf('[');
-                String name = property.substring(0, start).trim();
-                String index = property.substring(start + 1, property.length() - 1).trim();
-
-                String[] range = index.split(":");
-                String a = range.length > 0 ? range[0].trim() : Str.EMPTY;
-                String b = range.length > 1 ? range[1].trim() : Str.EMPTY;
-                subsetEntry = new AbstractMap.SimpleEntry<>(name
-                        , Subset.of(
-                        a.equals(Str.EMPTY) ? null : Integer.parseInt(a)
-                        , b.equals(Str.EMPTY) ? null : Integer.parseInt(b)));
-            }
-            indexCache.put(property, subsetEntry);
-            return subsetEntry;
+            return indexCache.computeIfAbsent(property, it -> {
+                if (it.matches(".*\\[-?[0-9]+]$") || it.matches(".*\\[[0-9]*:[0-9]*]$")) {
+                    int start = it.indexOf('[');
+                    String name = it.substring(0, start).trim();
+                    return Optional.of(new AbstractMap.SimpleImmutableEntry<>(name, Subset.parse(it.substring(start))));
+                }
+                return Optional.empty();
+            }).orElse(null);
         }
     }
 
@@ -487,30 +990,67 @@ class FieldsDSL {
         static Subset of(Integer a, Integer b) { return new Subset(a, b); }
         static Subset of(Integer a) { return new Subset(a, a); }
 
-        private Integer start, max;
-        private Integer end;
-        private final Integer min;
+        /**
+         * Parse a slice such as [3], [-1], [1:3], [:9] or [10:]. Bounds are inclusive and negative
+         * bounds count from the end.
+         * @param slice The slice, with or without the brackets
+         * @return The new Subset
+         * @throws NumberFormatException If a bound is not a number
+         */
+        static Subset parse(String slice) {
+            String index = slice.trim();
+            if (index.startsWith("[") && index.endsWith("]"))
+                index = index.substring(1, index.length() - 1).trim();
+            if (!index.contains(":"))
+                return of(Integer.parseInt(index));
+
+            String[] range = index.split(":", -1);
+            String a = range[0].trim();
+            String b = range[1].trim();
+            return of(a.equals(Str.EMPTY) ? null : Integer.parseInt(a)
+                    , b.equals(Str.EMPTY) ? null : Integer.parseInt(b));
+        }
+
+        // the bounds as written, null when open
+        private final Integer from, to;
+        // the bounds resolved against the array size
+        final int start, end;
+        private final int min, max;
 
         private Subset(Integer a, Integer b) {
             min = max = 0;
-            start(a);
-            end(b);
+            from = a;
+            to = b;
+            start = a == null ? min : a;
+            end = b == null ? max : b;
         }
 
-        private void start(Integer i) { this.start = i == null ? min : i; }
-        private void end(Integer i) { this.end = i == null ? max: i; }
-
-        Subset size(Integer i) {
-            this.max = i - 1;
+        private Subset(Subset subset, int size) {
+            min = 0;
+            max = size - 1;
+            from = subset.from;
+            to = subset.to;
+            int start = from == null ? min : from;
+            int end = to == null ? max : to;
             if (start < 0)
-                start = i + start;
-            else if (start >= i)
-                start = this.max;
+                start = size + start;
+            else if (start >= size)
+                start = max;
             if (end < 0)
-                end = i + end;
-            else if (end > i)
-                end = i;
-            return this;
+                end = size + end;
+            else if (end > size)
+                end = size;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Resolve the subset against an array. Subsets are immutable because parsed selections are shared.
+         * @param i The array size
+         * @return The resolved Subset
+         */
+        Subset size(Integer i) {
+            return new Subset(this, i);
         }
 
         void apply(List<ObjectNode> newNodes, ArrayNode node) {
@@ -549,7 +1089,14 @@ class FieldsDSL {
             }
         }
 
-        int computeStart() { return start == null || start < min ? min : start; }
-        int computeEnd() { return end == null || end > max ? max : end; }
+        @Override
+        public String toString() {
+            return from != null && from.equals(to)
+                    ? String.format("[%d]", from)
+                    : String.format("[%s:%s]", from == null ? Str.EMPTY : from, to == null ? Str.EMPTY : to);
+        }
+
+        int computeStart() { return start < min ? min : start; }
+        int computeEnd() { return end > max ? max : end; }
     }
 }
\ No newline at end of file
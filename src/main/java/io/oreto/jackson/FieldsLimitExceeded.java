@@ -0,0 +1,40 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Thrown when a Fields DSL expression is over one of the {@link FieldsLimits} of a Jackson5
+ */
+public class FieldsLimitExceeded extends JsonProcessingException {
+    private final String limit;
+    private final long value;
+    private final long max;
+
+    public FieldsLimitExceeded(String limit, long value, long max) {
+        super(String.format("fields %s of %d exceeds the limit of %d", limit, value, max));
+        this.limit = limit;
+        this.value = value;
+        this.max = max;
+    }
+
+    /**
+     * @return The name of the exceeded limit: length, depth, fields or slice
+     */
+    public String getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return The value found in the expression, or the value at which checking stopped
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return The configured limit
+     */
+    public long getMax() {
+        return max;
+    }
+}
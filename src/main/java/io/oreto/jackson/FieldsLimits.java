@@ -0,0 +1,162 @@
+package io.oreto.jackson;
+
+/**
+ * Limits on the complexity of Fields DSL expressions, which are often supplied by clients.
+ * A Jackson5 checks every expression in a single pass over its text before the expression is parsed,
+ * so an expression over the limits fails fast with {@link FieldsLimitExceeded} and never reaches the cache.
+ * <pre>
+ *     jackson5.limits(FieldsLimits.defaults().maxDepth(4).maxFields(64));
+ * </pre>
+ */
+public class FieldsLimits {
+    /**
+     * @return Generous limits, which only stop pathological expressions
+     */
+    public static FieldsLimits defaults() {
+        return new FieldsLimits()
+                .maxLength(4096)
+                .maxDepth(16)
+                .maxFields(512)
+                .maxSliceWidth(10_000);
+    }
+
+    /**
+     * @return No limits at all, for trusted expressions only. Every Jackson5 starts with these.
+     */
+    public static FieldsLimits none() {
+        return new FieldsLimits();
+    }
+
+    private int maxLength = Integer.MAX_VALUE;
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxFields = Integer.MAX_VALUE;
+    private long maxSliceWidth = Long.MAX_VALUE;
+
+    private FieldsLimits() {}
+
+    /**
+     * @param maxLength Maximum total characters of the root, include and exclude expressions
+     * @return This FieldsLimits
+     */
+    public FieldsLimits maxLength(int maxLength) {
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    /**
+     * @param maxDepth Maximum nesting of objects, by braces or dotted paths. a{ b.c } is 3 levels deep.
+     * @return This FieldsLimits
+     */
+    public FieldsLimits maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param maxFields Maximum number of field names in the root, include and exclude expressions together
+     * @return This FieldsLimits
+     */
+    public FieldsLimits maxFields(int maxFields) {
+        this.maxFields = maxFields;
+        return this;
+    }
+
+    /**
+     * @param maxSliceWidth Maximum number of elements a closed slice such as [0:99] may select
+     * @return This FieldsLimits
+     */
+    public FieldsLimits maxSliceWidth(long maxSliceWidth) {
+        this.maxSliceWidth = maxSliceWidth;
+        return this;
+    }
+
+    /**
+     * Check the expressions of the fields against the limits
+     * @param fields The fields
+     * @throws FieldsLimitExceeded If an expression is over a limit
+     */
+    void check(IFields fields) throws FieldsLimitExceeded {
+        int length = 0;
+        int count = 0;
+        for (String dsl : new String[] { fields.root(), fields.include(), fields.exclude() }) {
+            if (dsl == null)
+                continue;
+            length += dsl.length();
+            if (length > maxLength)
+                throw new FieldsLimitExceeded("length", length, maxLength);
+            count = check(dsl, count);
+        }
+    }
+
+    /**
+     * Scan one expression
+     * @param dsl The expression
+     * @param count The number of fields seen in the previous expressions
+     * @return The number of fields seen so far
+     */
+    private int check(String dsl, int count) throws FieldsLimitExceeded {
+        int braces = 0;
+        int dots = 0;
+        boolean name = false;
+        int len = dsl.length();
+        for (int i = 0; i < len; i++) {
+            char c = dsl.charAt(i);
+            switch (c) {
+                case '{':
+                    if (++braces + 1 > maxDepth)
+                        throw new FieldsLimitExceeded("depth", braces + 1, maxDepth);
+                    dots = 0;
+                    name = false;
+                    break;
+                case '}':
+                    braces--;
+                    dots = 0;
+                    name = false;
+                    break;
+                case '.':
+                    dots++;
+                    name = false;
+                    break;
+                case '[':
+                    i = slice(dsl, i);
+                    break;
+                default:
+                    if (Character.isWhitespace(c)) {
+                        dots = 0;
+                        name = false;
+                    } else if (!name) {
+                        name = true;
+                        if (++count > maxFields)
+                            throw new FieldsLimitExceeded("fields", count, maxFields);
+                        if (braces + dots + 1 > maxDepth)
+                            throw new FieldsLimitExceeded("depth", braces + dots + 1, maxDepth);
+                    }
+                    break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Check the width of the slice starting at i
+     * @return The index of the closing bracket, or of the opening one if the slice is not closed
+     */
+    private int slice(String dsl, int i) throws FieldsLimitExceeded {
+        int close = dsl.indexOf(']', i);
+        if (close < 0)
+            return i;
+        String[] range = dsl.substring(i + 1, close).split(":", -1);
+        try {
+            if (range.length == 2 && !range[0].trim().isEmpty() && !range[1].trim().isEmpty()) {
+                long from = Long.parseLong(range[0].trim());
+                long to = Long.parseLong(range[1].trim());
+                // bounds on either side of the end of the array depend on its size
+                if ((from < 0) == (to < 0) && to - from + 1 > maxSliceWidth)
+                    throw new FieldsLimitExceeded("slice", to - from + 1, maxSliceWidth);
+            }
+        } catch (NumberFormatException ignored) {
+            // not a slice this check understands, the parser decides
+        }
+        return close;
+    }
+}
@@ -0,0 +1,119 @@
+package io.oreto.jackson;
+
+/**
+ * Java Flight Recorder events for the serialization hot paths.
+ * The events are disabled until a recording enables them, for instance with the jackson5.jfc settings:
+ * <pre>
+ *     java -XX:StartFlightRecording=settings=/path/to/jackson5.jfc,filename=app.jfr ...
+ * </pre>
+ * On JVMs without the jdk.jfr module nothing is recorded, and a disabled event costs one check.
+ */
+final class Flights {
+    private Flights() {}
+
+    /**
+     * Longest DSL text recorded in an event, longer expressions are truncated
+     */
+    static final int MAX_DSL = 256;
+
+    /**
+     * The recorded kinds of work
+     */
+    enum Kind {
+        SERIALIZE, DESERIALIZE, PRUNE, ROOT, COMPILE, CSV_READ, CSV_WRITE;
+
+        /**
+         * @param operation A measured operation
+         * @return The kind of event recorded for the operation, null if it has none of its own
+         */
+        static Kind of(Jackson5Metrics.Operation operation) {
+            switch (operation) {
+                case SERIALIZE: return SERIALIZE;
+                case DESERIALIZE: return DESERIALIZE;
+                case CSV_READ: return CSV_READ;
+                case CSV_WRITE: return CSV_WRITE;
+                default: return null;
+            }
+        }
+    }
+
+    /**
+     * Creates the events, only loaded when the jdk.jfr module is present
+     */
+    interface Recorder {
+        Span begin(Kind kind);
+    }
+
+    /**
+     * An event which has begun and is committed by end
+     */
+    interface Span {
+        /**
+         * End and commit the event
+         * @param name Name of the Jackson5
+         * @param type The class being serialized or deserialized, may be null
+         * @param dsl The DSL text, may be null
+         * @param input Size of the input
+         * @param output Size of the output
+         */
+        void end(String name, Class<?> type, String dsl, long input, long output);
+    }
+
+    private static final Recorder recorder = recorder();
+
+    private static Recorder recorder() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (Recorder) Class.forName(Flights.class.getPackage().getName() + ".JfrRecorder")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (Throwable e) {
+            // no flight recorder on this JVM
+            return null;
+        }
+    }
+
+    /**
+     * Begin an event if flight recording of its kind is enabled
+     * @param kind The kind of work
+     * @return The begun event, null when it is not recorded
+     */
+    static Span begin(Kind kind) {
+        return recorder == null || kind == null ? null : recorder.begin(kind);
+    }
+
+    /**
+     * Begin an event for a measured operation if flight recording of its kind is enabled
+     * @param operation The operation
+     * @return The begun event, null when it is not recorded
+     */
+    static Span begin(Jackson5Metrics.Operation operation) {
+        return recorder == null ? null : begin(Kind.of(operation));
+    }
+
+    /**
+     * Describe the DSL of a fields selection, truncated to MAX_DSL characters
+     * @param fields The fields, may be null
+     * @return The DSL text, null when there are no fields
+     */
+    static String dsl(IFields fields) {
+        if (fields == null)
+            return null;
+        StringBuilder sb = new StringBuilder();
+        if (fields.root() != null)
+            sb.append("root: ").append(fields.root()).append(' ');
+        if (fields.include() != null)
+            sb.append("include: ").append(fields.include()).append(' ');
+        if (fields.exclude() != null)
+            sb.append("exclude: ").append(fields.exclude());
+        return truncate(sb.toString().trim());
+    }
+
+    /**
+     * @param dsl DSL text, may be null
+     * @return The text truncated to MAX_DSL characters
+     */
+    static String truncate(String dsl) {
+        return dsl == null || dsl.length() <= MAX_DSL ? dsl : dsl.substring(0, MAX_DSL - 3) + "...";
+    }
+}
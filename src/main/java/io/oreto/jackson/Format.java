@@ -0,0 +1,46 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * The wire format of the bytes and streams a Jackson5 writes and reads.
+ * Objects are rendered to the same tree whatever the format, so the Fields DSL selects the same values,
+ * and only the encoding of the tree differs. Strings are always JSON.
+ */
+public enum Format {
+    /**
+     * UTF-8 JSON, written by the factory of the ObjectMapper
+     */
+    JSON,
+    /**
+     * Binary JSON with back-references to the field names and short string values written before,
+     * so repeated names and values cost one or two bytes
+     */
+    SMILE,
+    /**
+     * RFC 8949 Concise Binary Object Representation
+     */
+    CBOR;
+
+    /**
+     * @param mapper The ObjectMapper, whose own factory writes JSON
+     * @return The factory of the generators and parsers of this format, a new one for the binary formats
+     */
+    JsonFactory factory(ObjectMapper mapper) {
+        switch (this) {
+            case SMILE:
+                return SmileFactory.builder()
+                        .enable(SmileGenerator.Feature.CHECK_SHARED_NAMES)
+                        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                        .build();
+            case CBOR:
+                return new CBORFactory();
+            default:
+                return mapper.getFactory();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package io.oreto.jackson;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics sink which keeps counters and latency histograms in memory, for tests, diagnostics
+ * or periodic export to a real metrics system.
+ * <pre>
+ *     InMemoryMetrics metrics = new InMemoryMetrics();
+ *     Jackson5.supply(metrics);
+ *     ...
+ *     metrics.histogram("", Operation.SERIALIZE).percentile(0.99);
+ * </pre>
+ */
+public class InMemoryMetrics implements Jackson5Metrics {
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    @Override
+    public void timed(String name, Operation operation, long nanos) {
+        histograms.computeIfAbsent(key(name, operation), it -> new Histogram()).record(nanos);
+    }
+
+    @Override
+    public void bytes(String name, Operation operation, long bytes) {
+        counter(key("bytes", name, operation)).add(bytes);
+    }
+
+    @Override
+    public void nodes(String name, long visited, long pruned) {
+        counter(key("visited", name)).add(visited);
+        counter(key("pruned", name)).add(pruned);
+    }
+
+    @Override
+    public void cache(String name, Cache event) {
+        counter(key("cache", name, event)).increment();
+    }
+
+    @Override
+    public void renderCache(String name, Cache event) {
+        counter(key("renders", name, event)).increment();
+    }
+
+    /**
+     * Get the latency histogram of an operation
+     * @param name Name of the Jackson5
+     * @param operation The operation
+     * @return The histogram, empty if the operation never ran
+     */
+    public Histogram histogram(String name, Operation operation) {
+        Histogram histogram = histograms.get(key(name, operation));
+        return histogram == null ? new Histogram() : histogram;
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @param operation The operation
+     * @return The number of times the operation ran
+     */
+    public long count(String name, Operation operation) {
+        return histogram(name, operation).count();
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @param operation The operation
+     * @return The total UTF-8 bytes produced by the operation
+     */
+    public long bytes(String name, Operation operation) {
+        return value(key("bytes", name, operation));
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @return The total JSON objects visited by the Fields DSL
+     */
+    public long visited(String name) {
+        return value(key("visited", name));
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @return The total fields and array elements removed by the Fields DSL
+     */
+    public long pruned(String name) {
+        return value(key("pruned", name));
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @param event The cache event
+     * @return The number of times the event happened
+     */
+    public long events(String name, Cache event) {
+        return value(key("cache", name, event));
+    }
+
+    /**
+     * @param name Name of the Jackson5
+     * @param event The render cache event
+     * @return The number of times the event happened
+     */
+    public long renders(String name, Cache event) {
+        return value(key("renders", name, event));
+    }
+
+    /**
+     * Forget everything recorded so far
+     */
+    public void reset() {
+        histograms.clear();
+        counters.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        new TreeMap<>(histograms).forEach((k, v) -> sb.append(k).append(' ').append(v).append('\n'));
+        new TreeMap<>(counters).forEach((k, v) -> sb.append(k).append(' ').append(v.sum()).append('\n'));
+        return sb.toString();
+    }
+
+    private LongAdder counter(String key) {
+        return counters.computeIfAbsent(key, it -> new LongAdder());
+    }
+
+    private long value(String key) {
+        LongAdder counter = counters.get(key);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    private static String key(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            if (sb.length() > 0)
+                sb.append('/');
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Latency histogram with power of two buckets, so percentiles are accurate to within a factor of two
+     */
+    public static class Histogram {
+        // bucket i counts durations from 2^i up to 2^(i+1) nanoseconds
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder total = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        void record(long nanos) {
+            nanos = Math.max(nanos, 1);
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos));
+            count.increment();
+            total.add(nanos);
+            max.accumulate(nanos);
+        }
+
+        /**
+         * @return The number of recorded durations
+         */
+        public long count() {
+            return count.sum();
+        }
+
+        /**
+         * @return The mean duration in nanoseconds
+         */
+        public double mean() {
+            long n = count();
+            return n == 0 ? 0 : (double) total.sum() / n;
+        }
+
+        /**
+         * @return The longest duration in nanoseconds
+         */
+        public long max() {
+            return max.get();
+        }
+
+        /**
+         * Estimate a percentile
+         * @param p The percentile between 0 and 1, such as 0.99
+         * @return The upper bound in nanoseconds of the bucket holding the percentile
+         */
+        public long percentile(double p) {
+            long n = count();
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < 64; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Math.min(i == 63 ? Long.MAX_VALUE : (1L << (i + 1)) - 1, max());
+            }
+            return max();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns max=%dns"
+                    , count(), mean(), percentile(0.5), percentile(0.99), max());
+        }
+    }
+}
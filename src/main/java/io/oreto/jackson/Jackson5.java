@@ -1,22 +1,55 @@
 package io.oreto.jackson;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.type.CollectionType;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static io.oreto.jackson.Jackson5Metrics.Operation.*;
 
 public class Jackson5 {
     static final String DEFAULT_NAME = Util.Str.EMPTY;
+    /**
+     * Default number of elements encoded by each task of {@link #writeParallel(OutputStream, List, IFields)}
+     */
+    public static final int CHUNK_SIZE = 1024;
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<Map<String, Object>>() {};
 
-    private static Supplier<ObjectMapper> defaultSupplier = Jackson5.newSupplier();
+    private static volatile Supplier<ObjectMapper> defaultSupplier = Jackson5.newSupplier();
+    private static volatile Jackson5Metrics defaultMetrics;
+    private static volatile DslProfiler defaultProfiler;
 
     /**
      * Supply named Jackson5 with an ObjectMapper.
@@ -53,7 +86,8 @@ public class Jackson5 {
      * @param mapperConfig ObjectMapper configuration
      */
     public static void supply(String name, MapperConfig mapperConfig) {
-        supply(name, newSupplier(mapperConfig));
+        Jackson5 jackson5 = new Jackson5(name, mapperConfig.build()).format(mapperConfig.format());
+        jacksons.put(name, jackson5);
     }
 
     /**
@@ -62,7 +96,7 @@ public class Jackson5 {
      * @param mapperConfig ObjectMapper configuration
      */
     public static void supply(Class<?> cls, MapperConfig mapperConfig) {
-        supply(cls, newSupplier(mapperConfig));
+        supply(cls.getName(), mapperConfig);
     }
 
     /**
@@ -70,7 +104,23 @@ public class Jackson5 {
      * @param mapperConfig ObjectMapper configuration
      */
     public static void supply(MapperConfig mapperConfig) {
-        supply(DEFAULT_NAME, newSupplier(mapperConfig));
+        supply(DEFAULT_NAME, mapperConfig);
+    }
+
+    /**
+     * Set the metrics listener of every Jackson5 which has none of its own, and of Csv
+     * @param metrics The listener, or null to stop measuring
+     */
+    public static void supply(Jackson5Metrics metrics) {
+        Jackson5.defaultMetrics = metrics;
+    }
+
+    /**
+     * Set the Fields DSL profiler of every Jackson5 which has none of its own
+     * @param profiler The profiler, or null to stop profiling
+     */
+    public static void supply(DslProfiler profiler) {
+        Jackson5.defaultProfiler = profiler;
     }
 
     /**
@@ -80,7 +130,7 @@ public class Jackson5 {
      * If a name has not been supplied, <tt>Optional.empty()</tt>
      */
     public static Optional<Jackson5> find(String name) {
-        return jacksons.containsKey(name) ? Optional.of(jacksons.get(name)) : Optional.empty();
+        return Optional.ofNullable(jacksons.get(name));
     }
 
     /**
@@ -136,9 +186,11 @@ public class Jackson5 {
      * @return new or existing Jackson5 object
      */
     public static Jackson5 get() {
-        if (!jacksons.containsKey(DEFAULT_NAME))
-            supply(defaultSupplier);
-        return jacksons.get(DEFAULT_NAME);
+        Jackson5 jackson5 = jacksons.get(DEFAULT_NAME);
+        // only one default is ever created, even when several threads ask at once
+        return jackson5 == null
+                ? jacksons.computeIfAbsent(DEFAULT_NAME, name -> new Jackson5(name, defaultSupplier.get()))
+                : jackson5;
     }
 
     /**
@@ -158,18 +210,30 @@ public class Jackson5 {
         return newSupplier(MapperConfig.defaultConfig());
     }
 
-    private static final Map<String, Jackson5> jacksons = new HashMap<>();
+    private static final Map<String, Jackson5> jacksons = new ConcurrentHashMap<>();
 
     // *****************************************************************************************************
 
     private final String name;
     private final ObjectMapper mapper;
     private final FieldsDSL fieldsDSL;
+    private final Map<Format, JsonFactory> factories = new EnumMap<>(Format.class);
+    private volatile Format format = Format.JSON;
+    private volatile Jackson5Metrics metrics;
+    private volatile DslProfiler profiler;
+    private volatile FieldsLimits limits = FieldsLimits.none();
+    private volatile TraversalBudget budget;
+    private volatile RenderCache renderCache;
+    private final JsonPatch patches = new JsonPatch();
+    // made with the default limits on the first async call
+    private volatile Async async;
 
     protected Jackson5(String name, ObjectMapper mapper) {
         this.name = name;
         this.mapper = mapper;
-        this.fieldsDSL = new FieldsDSL(mapper);
+        this.fieldsDSL = new FieldsDSL(mapper, this);
+        for (Format format : Format.values())
+            factories.put(format, format.factory(mapper));
     }
 
     public String getName() {
@@ -181,10 +245,289 @@ public class Jackson5 {
         return getName();
     }
 
-    private FieldsDSL renderer() {
+    FieldsDSL renderer() {
         return fieldsDSL;
     }
 
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    /**
+     * Set the metrics listener of this Jackson5, overriding the one supplied to every Jackson5
+     * @param metrics The listener, or null to fall back to the one supplied to every Jackson5
+     * @return This Jackson5
+     */
+    public Jackson5 metrics(Jackson5Metrics metrics) {
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * @return The metrics listener in effect, null when nothing is measured
+     */
+    Jackson5Metrics metrics() {
+        Jackson5Metrics metrics = this.metrics;
+        return metrics == null ? defaultMetrics : metrics;
+    }
+
+    /**
+     * Set the Fields DSL profiler of this Jackson5, overriding the one supplied to every Jackson5
+     * @param profiler The profiler, or null to fall back to the one supplied to every Jackson5
+     * @return This Jackson5
+     */
+    public Jackson5 profiler(DslProfiler profiler) {
+        this.profiler = profiler;
+        return this;
+    }
+
+    /**
+     * @return The Fields DSL profiler in effect, null when nothing is profiled
+     */
+    DslProfiler profiler() {
+        DslProfiler profiler = this.profiler;
+        return profiler == null ? defaultProfiler : profiler;
+    }
+
+    /**
+     * Set the wire format of the bytes and streams which this Jackson5 writes and reads when a call names none.
+     * Strings are always JSON. Every Jackson5 starts with the format of its {@link MapperConfig}, JSON by default.
+     * @param format The format, or null for JSON
+     * @return This Jackson5
+     */
+    public Jackson5 format(Format format) {
+        this.format = format == null ? Format.JSON : format;
+        return this;
+    }
+
+    /**
+     * @return The wire format of the bytes and streams
+     */
+    Format format() {
+        return format;
+    }
+
+    /**
+     * Set the limits on the complexity of the Fields DSL expressions this Jackson5 accepts.
+     * Every Jackson5 starts with {@link FieldsLimits#none()}, so services which accept expressions from clients
+     * should opt in to {@link FieldsLimits#defaults()} or tighter limits.
+     * @param limits The limits, or null for none
+     * @return This Jackson5
+     */
+    public Jackson5 limits(FieldsLimits limits) {
+        this.limits = limits;
+        return this;
+    }
+
+    /**
+     * @return The limits on Fields DSL expressions, null when there are none
+     */
+    FieldsLimits limits() {
+        return limits;
+    }
+
+    /**
+     * Set the budgets of the walk over the object graph when objects are converted to trees,
+     * which covers every call with fields and is the whole graph when nothing is included.
+     * A Jackson5 starts with no budgets, {@link TraversalBudget#defaults()} only stops runaway graphs.
+     * @param budget The budgets, or null for none
+     * @return This Jackson5
+     */
+    public Jackson5 budget(TraversalBudget budget) {
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * @return The traversal budgets, null when there are none
+     */
+    TraversalBudget budget() {
+        return budget;
+    }
+
+    /**
+     * Set the cache of rendered output. Once set, serializing and writing with fields reuse the renders
+     * of the same object, fields and pretty flag instead of rendering again.
+     * @param renderCache The cache, or null for none which is the default
+     * @return This Jackson5
+     */
+    public Jackson5 renderCache(RenderCache renderCache) {
+        this.renderCache = renderCache;
+        return this;
+    }
+
+    /**
+     * @return The cache of rendered output, null when there is none
+     */
+    RenderCache renderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Set the limits of the async calls, which run on a new executor from now on.
+     * Calls admitted earlier finish on the old one. Every Jackson5 starts with {@link AsyncLimits#defaults()}.
+     * @param limits The limits
+     * @return This Jackson5
+     */
+    public Jackson5 async(AsyncLimits limits) {
+        Async old;
+        synchronized (this) {
+            old = async;
+            async = new Async(limits, name);
+        }
+        if (old != null)
+            old.shutdown();
+        return this;
+    }
+
+    /**
+     * @return The limits of the async calls
+     */
+    AsyncLimits async() {
+        return runner().limits();
+    }
+
+    private Async runner() {
+        Async async = this.async;
+        if (async == null) {
+            synchronized (this) {
+                if (this.async == null)
+                    this.async = new Async(AsyncLimits.defaults(), name);
+                async = this.async;
+            }
+        }
+        return async;
+    }
+
+    /**
+     * Look up a render in the cache, rendering it on a miss
+     */
+    private RenderCache.Entry cached(RenderCache cache
+            , Object version
+            , Object o
+            , IFields fields
+            , boolean pretty
+            , Format format) throws JsonProcessingException {
+        return cache.get(RenderCache.Key.of(version, o, fields, pretty, format), name, metrics()
+                , () -> encode(o, fields, pretty, format));
+    }
+
+    /**
+     * Render an object with fields in a format. JSON is the same UTF-8 as the String of serialize.
+     */
+    private byte[] encode(Object o, IFields fields, boolean pretty, Format format) throws JsonProcessingException {
+        JsonNode json = renderer().json(o, fields);
+        if (format != Format.JSON)
+            return writer(false, format).writeValueAsBytes(json);
+        return (pretty ? json.toPrettyString() : json.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A unit of work which may fail
+     * @param <T> The result type
+     * @param <E> The exception type
+     */
+    @FunctionalInterface
+    interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    private interface Write {
+        void to(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Run an operation, timing it when a metrics listener is registered.
+     * The size of String output of serialize and csv write operations is recorded too.
+     * @param operation The operation being run
+     * @param call The work
+     * @return The result of the work
+     * @throws E If the work fails
+     */
+    <T, E extends Exception> T measure(Jackson5Metrics.Operation operation, Call<T, E> call) throws E {
+        return measure(operation, null, null, null, call);
+    }
+
+    /**
+     * Run an operation, timing it when a metrics listener is registered and recording a flight recorder event
+     * when its kind is enabled. The size of String output of serialize and csv write operations is recorded too.
+     * @param operation The operation being run
+     * @param type The class being serialized or deserialized, may be null
+     * @param fields The fields selection, may be null
+     * @param input The text being deserialized, may be null
+     * @param call The work
+     * @return The result of the work
+     * @throws E If the work fails
+     */
+    <T, E extends Exception> T measure(Jackson5Metrics.Operation operation
+            , Class<?> type
+            , IFields fields
+            , CharSequence input
+            , Call<T, E> call) throws E {
+        Jackson5Metrics metrics = metrics();
+        Flights.Span span = Flights.begin(operation);
+        if (metrics == null && span == null)
+            return call.call();
+        long start = System.nanoTime();
+        T t = null;
+        try {
+            return t = call.call();
+        } finally {
+            long output = output(operation, t);
+            if (metrics != null) {
+                metrics.timed(name, operation, System.nanoTime() - start);
+                if (t instanceof CharSequence && output > 0)
+                    metrics.bytes(name, operation, output);
+            }
+            if (span != null)
+                span.end(name, type, Flights.dsl(fields), input == null ? 0 : Util.Str.utf8Length(input), output);
+        }
+    }
+
+    /**
+     * @return UTF-8 bytes of text written by serialize and csv write operations, elements of collections
+     */
+    private static long output(Jackson5Metrics.Operation operation, Object o) {
+        if (o instanceof CharSequence)
+            return operation == SERIALIZE || operation == CSV_WRITE ? Util.Str.utf8Length((CharSequence) o) : 0;
+        return o instanceof Collection ? ((Collection<?>) o).size() : 0;
+    }
+
+    private static Class<?> type(Object o) {
+        return o == null ? null : o.getClass();
+    }
+
+    /**
+     * Serialize to a stream, timing it and counting the bytes when a metrics listener is registered
+     * or the serialize flight recorder event is enabled
+     * @param out The stream to write to
+     * @param o The object being serialized
+     * @param fields The fields selection, may be null
+     * @param write Writes the JSON to the stream it is given
+     * @throws IOException If the write fails
+     */
+    private void measure(OutputStream out, Object o, IFields fields, Write write) throws IOException {
+        Jackson5Metrics metrics = metrics();
+        Flights.Span span = Flights.begin(SERIALIZE);
+        if (metrics == null && span == null) {
+            write.to(out);
+            return;
+        }
+        Util.IO.CountingOutputStream counted = new Util.IO.CountingOutputStream(out);
+        long start = System.nanoTime();
+        try {
+            write.to(counted);
+        } finally {
+            if (metrics != null) {
+                metrics.timed(name, SERIALIZE, System.nanoTime() - start);
+                metrics.bytes(name, SERIALIZE, counted.count);
+            }
+            if (span != null)
+                span.end(name, type(o), Flights.dsl(fields), 0, counted.count);
+        }
+    }
+
     /**
      * Convert Object to a JsonNode object
      * @param o Object to convert
@@ -192,7 +535,7 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public JsonNode json(Object o) throws JsonProcessingException {
-        return renderer().json(o);
+        return measure(JSON, () -> renderer().json(o));
     }
 
     /**
@@ -203,7 +546,30 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public JsonNode json(Object o, IFields fields) throws JsonProcessingException {
-        return renderer().json(o, fields);
+        return measure(JSON, () -> renderer().json(o, fields));
+    }
+
+    /**
+     * Render Object with fields as an RFC 6902 JSON Patch against the previous render for the same client,
+     * for pushing updates of the same object over and over. The first patch of a client replaces the whole document.
+     * Only a digest of the previous render is kept, and unchanged subtrees are skipped by comparing their hashes.
+     * Call {@link #forget(Object)} when the client goes away.
+     * @param client Key of the client, such as its session, compared with equals
+     * @param o The object to render
+     * @param fields Fields which are included/excluded in the JSON
+     * @return The array of patch operations, empty when nothing changed
+     * @throws JsonProcessingException If errors occur during serialization
+     */
+    public ArrayNode patch(Object client, Object o, IFields fields) throws JsonProcessingException {
+        return measure(JSON, type(o), fields, null, () -> patches.diff(client, renderer().json(o, fields)));
+    }
+
+    /**
+     * Forget the previous render of a client
+     * @param client Key of the client
+     */
+    public void forget(Object client) {
+        patches.forget(client);
     }
 
     /**
@@ -214,7 +580,26 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public JsonNode json(Object o, String fields) throws JsonProcessingException {
-        return renderer().json(o, Fields.Include(fields));
+        return json(o, Fields.Include(fields));
+    }
+
+    /**
+     * Convert Object to a JsonNode object on the async executor. Cancelling the future stops the render where it is.
+     * @param o Object to convert
+     * @param fields Fields representing the object fields which are converted, may be null
+     * @return The future JsonNode, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public CompletableFuture<JsonNode> jsonAsync(Object o, IFields fields) {
+        return runner().submit(() -> fields == null ? json(o) : json(o, fields));
+    }
+
+    /**
+     * Convert Object to a JsonNode object on the async executor. Cancelling the future stops the render where it is.
+     * @param o Object to convert
+     * @return The future JsonNode, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public CompletableFuture<JsonNode> jsonAsync(Object o) {
+        return jsonAsync(o, null);
     }
 
     /**
@@ -225,9 +610,9 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public String serialize(Object o, boolean pretty) throws JsonProcessingException {
-        return pretty
-                ? mapper.writerWithDefaultPrettyPrinter().writeValueAsString(o)
-                : mapper.writer().writeValueAsString(o);
+        return measure(SERIALIZE, type(o), null, null, () -> pretty
+                ? Async.string(mapper.writerWithDefaultPrettyPrinter(), o)
+                : Async.string(mapper.writer(), o));
     }
 
     /**
@@ -239,7 +624,70 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public String serialize(Object o, IFields fields, boolean pretty) throws JsonProcessingException {
-        return pretty ? renderer().json(o, fields).toPrettyString() : renderer().json(o, fields).toString();
+        RenderCache cache = renderCache;
+        if (cache != null && o != null)
+            return measure(SERIALIZE, type(o), fields, null, () -> cached(cache, null, o, fields, pretty, Format.JSON).string());
+        return measure(SERIALIZE, type(o), fields, null, () -> pretty
+                ? renderer().json(o, fields).toPrettyString()
+                : renderer().json(o, fields).toString());
+    }
+
+    /**
+     * Render Object in a format, reusing an earlier render of the same version when there is a render cache
+     * @param version Key of the version of the object, compared with equals. If null the object is keyed by identity.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly. The binary formats ignore it.
+     * @param format The wire format
+     * @return The encoded bytes. JSON is the UTF-8 of {@link #serialize(Object, IFields, boolean)}.
+     * @throws JsonProcessingException If errors occur during serialization
+     */
+    public byte[] render(Object version, Object o, IFields fields, boolean pretty, Format format)
+            throws JsonProcessingException {
+        boolean indent = pretty && format == Format.JSON;
+        RenderCache cache = renderCache;
+        return measure(SERIALIZE, type(o), fields, null, () -> cache == null || o == null
+                ? encode(o, fields, indent, format)
+                : cached(cache, version, o, fields, indent, format).bytes());
+    }
+
+    /**
+     * Render Object in the format of this Jackson5, reusing an earlier render of the same version
+     * when there is a render cache
+     * @param version Key of the version of the object, compared with equals. If null the object is keyed by identity.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly
+     * @return The encoded bytes, for JSON the same as those of {@link #serialize(Object, IFields, boolean)}
+     * @throws JsonProcessingException If errors occur during serialization
+     */
+    public byte[] render(Object version, Object o, IFields fields, boolean pretty) throws JsonProcessingException {
+        return render(version, o, fields, pretty, format());
+    }
+
+    /**
+     * Render Object in the format of this Jackson5, reusing an earlier render of the same object
+     * when there is a render cache
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly
+     * @return The encoded bytes
+     * @throws JsonProcessingException If errors occur during serialization
+     */
+    public byte[] render(Object o, IFields fields, boolean pretty) throws JsonProcessingException {
+        return render(null, o, fields, pretty);
+    }
+
+    /**
+     * Render Object in a format, reusing an earlier render of the same object when there is a render cache
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param format The wire format
+     * @return The encoded bytes
+     * @throws JsonProcessingException If errors occur during serialization
+     */
+    public byte[] render(Object o, IFields fields, Format format) throws JsonProcessingException {
+        return render(null, o, fields, false, format);
     }
 
     /**
@@ -250,7 +698,7 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public String serialize(Object o, IFields fields) throws JsonProcessingException {
-        return renderer().json(o, fields).toString();
+        return serialize(o, fields, false);
     }
 
     /**
@@ -261,7 +709,7 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public String serialize(Object o, String fields) throws JsonProcessingException {
-        return renderer().json(o, Fields.Include(fields)).toString();
+        return serialize(o, Fields.Include(fields), false);
     }
 
     /**
@@ -271,7 +719,270 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public String serialize(Object o) throws JsonProcessingException {
-        return mapper.writer().writeValueAsString(o);
+        return serialize(o, false);
+    }
+
+    /**
+     * Serialize Object as JSON string on the async executor. Cancelling the future stops the render where it is.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the JSON string, may be null
+     * @param pretty If true JSON string will be pretty printed, otherwise ugly
+     * @return The future JSON String, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public CompletableFuture<String> serializeAsync(Object o, IFields fields, boolean pretty) {
+        return runner().submit(() -> fields == null ? serialize(o, pretty) : serialize(o, fields, pretty));
+    }
+
+    /**
+     * Serialize Object as JSON string on the async executor. Cancelling the future stops the render where it is.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the JSON string, may be null
+     * @return The future JSON String, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public CompletableFuture<String> serializeAsync(Object o, IFields fields) {
+        return serializeAsync(o, fields, false);
+    }
+
+    /**
+     * Serialize Object as JSON string on the async executor. Cancelling the future stops the render where it is.
+     * @param o The object to serialize
+     * @return The future JSON String, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public CompletableFuture<String> serializeAsync(Object o) {
+        return serializeAsync(o, null, false);
+    }
+
+    /**
+     * Serialize Object in a format to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @param pretty If true JSON will be pretty printed, otherwise ugly. The binary formats ignore it.
+     * @param format The wire format
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o, boolean pretty, Format format) throws IOException {
+        measure(out, o, null, it -> writer(pretty, format).writeValue(it, o));
+    }
+
+    /**
+     * Serialize Object in the format of this Jackson5 to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @param pretty If true JSON will be pretty printed, otherwise ugly
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o, boolean pretty) throws IOException {
+        write(out, o, pretty, format());
+    }
+
+    /**
+     * Serialize Object in the format of this Jackson5 to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o) throws IOException {
+        write(out, o, false);
+    }
+
+    /**
+     * Serialize Object in the format of this Jackson5 to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o, IFields fields, boolean pretty) throws IOException {
+        write(out, null, o, fields, pretty);
+    }
+
+    /**
+     * Serialize Object in a format to an OutputStream, which is flushed but left open.
+     * With a render cache the cached bytes of the same version are written as they are.
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param version Key of the version of the object, compared with equals. If null the object is keyed by identity.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly. The binary formats ignore it.
+     * @param format The wire format
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object version, Object o, IFields fields, boolean pretty, Format format)
+            throws IOException {
+        boolean indent = pretty && format == Format.JSON;
+        RenderCache cache = renderCache;
+        if (cache != null && o != null) {
+            measure(out, o, fields, it -> {
+                cached(cache, version, o, fields, indent, format).write(it);
+                it.flush();
+            });
+        } else {
+            measure(out, o, fields, it -> writer(indent, format).writeValue(it, renderer().json(o, fields)));
+        }
+    }
+
+    /**
+     * Serialize Object in the format of this Jackson5 to an OutputStream, which is flushed but left open.
+     * With a render cache the cached bytes of the same version are written as they are.
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param version Key of the version of the object, compared with equals. If null the object is keyed by identity.
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param pretty If true JSON will be pretty printed, otherwise ugly
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object version, Object o, IFields fields, boolean pretty) throws IOException {
+        write(out, version, o, fields, pretty, format());
+    }
+
+    /**
+     * Serialize Object in the format of this Jackson5 to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o, IFields fields) throws IOException {
+        write(out, o, fields, false);
+    }
+
+    /**
+     * Serialize Object in a format to an OutputStream, which is flushed but left open
+     * @param out The stream to write to, such as a {@link ParallelGzipOutputStream}
+     * @param o The object to serialize
+     * @param fields Fields which are included/excluded in the output
+     * @param format The wire format
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void write(OutputStream out, Object o, IFields fields, Format format) throws IOException {
+        write(out, null, o, fields, false, format);
+    }
+
+    /**
+     * Serialize a List as compact JSON to an OutputStream on several threads, which is flushed but left open.
+     * The list is split into chunks which are encoded on a pool of workers, and the chunks are written in order,
+     * so the output is byte for byte the same as {@link #write(OutputStream, Object, IFields, boolean)}.
+     * A Root selection depends on the whole list, and the binary formats refer back to what was written before,
+     * so they are written sequentially.
+     * @param out The stream to write to
+     * @param list The list to serialize, which must not change while it is written
+     * @param fields Fields which are included/excluded in each element, may be null
+     * @param chunkSize The number of elements encoded by each task
+     * @param parallelism The number of worker threads
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void writeParallel(OutputStream out, List<?> list, IFields fields, int chunkSize, int parallelism)
+            throws IOException {
+        if (chunkSize <= 0 || parallelism <= 0)
+            throw new IllegalArgumentException("chunkSize and parallelism must be positive");
+        Format format = format();
+        if (list == null
+                || list.size() <= chunkSize
+                || (fields != null && Util.Str.isNotBlank(fields.root()))
+                || format != Format.JSON) {
+            if (fields == null)
+                write(out, list, false, format);
+            else
+                write(out, null, list, fields, false, format);
+            return;
+        }
+        measure(out, list, fields, it -> writeChunks(it, list, fields, chunkSize, parallelism));
+    }
+
+    /**
+     * Serialize a List as compact JSON to an OutputStream on all available processors
+     * @param out The stream to write to
+     * @param list The list to serialize, which must not change while it is written
+     * @param fields Fields which are included/excluded in each element, may be null
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void writeParallel(OutputStream out, List<?> list, IFields fields) throws IOException {
+        writeParallel(out, list, fields, CHUNK_SIZE, Workers.parallelism());
+    }
+
+    /**
+     * Serialize a List as compact JSON to an OutputStream on all available processors
+     * @param out The stream to write to
+     * @param list The list to serialize, which must not change while it is written
+     * @throws IOException If errors occur during serialization or writing
+     */
+    public void writeParallel(OutputStream out, List<?> list) throws IOException {
+        writeParallel(out, list, null);
+    }
+
+    private void writeChunks(OutputStream out, List<?> list, IFields fields, int chunkSize, int parallelism)
+            throws IOException {
+        ExecutorService pool = Workers.pool("jackson5-write", parallelism);
+        // bound the memory held by chunks which are encoding or waiting to be written
+        int maxPending = parallelism * 2;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        boolean[] first = { true };
+        try {
+            out.write('[');
+            for (int start = 0; start < list.size(); start += chunkSize) {
+                List<?> chunk = list.subList(start, Math.min(list.size(), start + chunkSize));
+                pending.add(pool.submit(() -> fields == null
+                        ? writer(false).writeValueAsBytes(chunk)
+                        : writer(false).writeValueAsBytes(renderer().json(chunk, fields))));
+                while (pending.size() >= maxPending)
+                    drain(out, pending.removeFirst(), first);
+            }
+            while (!pending.isEmpty())
+                drain(out, pending.removeFirst(), first);
+            out.write(']');
+            out.flush();
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Write the elements of an encoded chunk, separated from those before by a comma
+     */
+    private static void drain(OutputStream out, Future<byte[]> future, boolean[] first) throws IOException {
+        byte[] chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+        // a chunk is an array, unless the fields render a single element as the element itself
+        int from = chunk[0] == '[' ? 1 : 0;
+        int length = chunk.length - from * 2;
+        if (length == 0)
+            return;
+        if (!first[0])
+            out.write(',');
+        out.write(chunk, from, length);
+        first[0] = false;
+    }
+
+    private ObjectWriter writer(boolean pretty) {
+        return (pretty ? mapper.writerWithDefaultPrettyPrinter() : mapper.writer())
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    /**
+     * @return A writer of the format, which is configured like the mapper
+     */
+    private ObjectWriter writer(boolean pretty, Format format) {
+        return format == Format.JSON ? writer(pretty) : writer(false).with(factories.get(format));
+    }
+
+    /**
+     * @return A reader of the format, which is configured like the mapper
+     */
+    private ObjectReader reader(Class<?> tClass, Format format) {
+        ObjectReader reader = mapper.readerFor(tClass);
+        return format == Format.JSON ? reader : reader.with(factories.get(format));
     }
 
     /**
@@ -282,7 +993,7 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public Map<String, Object> map(Object o, IFields fields) throws JsonProcessingException {
-        return map(json(o, fields));
+        return measure(MAP, () -> mapper.convertValue(renderer().json(o, fields), MAP_TYPE));
     }
 
     /**
@@ -291,7 +1002,7 @@ public class Jackson5 {
      * @return Map representation of object o
      */
     public Map<String, Object> map(Object o) {
-        return mapper.convertValue(o, new TypeReference<Map<String, Object>>() {});
+        return measure(MAP, () -> mapper.convertValue(o, MAP_TYPE));
     }
 
     /**
@@ -302,7 +1013,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during serialization
      */
     public Map<String, Object> map(CharSequence json, IFields fields) throws IOException {
-        return map(json(json, fields));
+        return measure(MAP, () -> mapper.convertValue(renderer().json(json, fields), MAP_TYPE));
     }
 
     /**
@@ -312,7 +1023,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during serialization
      */
     public Map<String, Object> map(CharSequence json) throws IOException {
-        return mapper.readValue(json.toString(), new TypeReference<Map<String, Object>>() {});
+        return measure(MAP, () -> mapper.readValue(json.toString(), MAP_TYPE));
     }
 
     /**
@@ -323,7 +1034,7 @@ public class Jackson5 {
      * @return New typed object representing the supplied map
      */
     public <T> T convert(Object o, Class<T> tClass) {
-        return mapper.convertValue(o, tClass);
+        return measure(CONVERT, () -> mapper.convertValue(o, tClass));
     }
 
     /**
@@ -336,7 +1047,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during conversion
      */
     public <T> T convert(Object o, Class<T> tClass, IFields fields) throws IOException {
-        return convert(renderer().json(o, fields), tClass);
+        return measure(CONVERT, () -> mapper.convertValue(renderer().json(o, fields), tClass));
     }
 
     /**
@@ -348,7 +1059,128 @@ public class Jackson5 {
      * @throws IOException If errors occur during deserialization
      */
     public <T> T deserialize(CharSequence json, Class<T> tClass) throws IOException {
-        return mapper.reader().readValue(json.toString(), tClass);
+        return measure(DESERIALIZE, tClass, null, json, () -> Async.read(mapper.readerFor(tClass), json.toString()));
+    }
+
+    /**
+     * Create new object type from a stream in a format using specified class type.
+     * Gzip input is recognized and inflated on a separate thread while it is parsed.
+     * @param in InputStream to deserialize, which is closed when done
+     * @param tClass Class type of the new object
+     * @param format The wire format
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied input
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(InputStream in, Class<T> tClass, Format format) throws IOException {
+        return measure(DESERIALIZE, tClass, null, null, () -> {
+            try (InputStream input = PipelinedGzipInputStream.decompressed(in)) {
+                return reader(tClass, format).<T>readValue(input);
+            }
+        });
+    }
+
+    /**
+     * Create new object type from a stream in the format of this Jackson5 using specified class type.
+     * Gzip input is recognized and inflated on a separate thread while it is parsed.
+     * @param in InputStream to deserialize, which is closed when done
+     * @param tClass Class type of the new object
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied input
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(InputStream in, Class<T> tClass) throws IOException {
+        return deserialize(in, tClass, format());
+    }
+
+    /**
+     * Create new object type from bytes in a format using specified class type
+     * @param data Encoded bytes to deserialize
+     * @param tClass Class type of the new object
+     * @param format The wire format
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied bytes
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(byte[] data, Class<T> tClass, Format format) throws IOException {
+        return measure(DESERIALIZE, tClass, null, null, () -> reader(tClass, format).<T>readValue(data));
+    }
+
+    /**
+     * Create new object type from bytes in the format of this Jackson5 using specified class type
+     * @param data Encoded bytes to deserialize
+     * @param tClass Class type of the new object
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied bytes
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(byte[] data, Class<T> tClass) throws IOException {
+        return deserialize(data, tClass, format());
+    }
+
+    /**
+     * Create new object type from bytes in a format using specified class type
+     * @param data Encoded bytes to deserialize
+     * @param tClass Class type of the new object
+     * @param fields fields which are included/excluded in the class T
+     * @param format The wire format
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied bytes
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(byte[] data, Class<T> tClass, IFields fields, Format format) throws IOException {
+        return measure(DESERIALIZE, tClass, fields, null, () -> mapper.convertValue(
+                renderer().json(reader(JsonNode.class, format).<JsonNode>readValue(data), fields), tClass));
+    }
+
+    /**
+     * Create new object type from bytes in the format of this Jackson5 using specified class type
+     * @param data Encoded bytes to deserialize
+     * @param tClass Class type of the new object
+     * @param fields fields which are included/excluded in the class T
+     * @param <T> Type of the new object
+     * @return New typed object representing the supplied bytes
+     * @throws IOException If errors occur during deserialization
+     */
+    public <T> T deserialize(byte[] data, Class<T> tClass, IFields fields) throws IOException {
+        return deserialize(data, tClass, fields, format());
+    }
+
+    /**
+     * Lazily read the elements of an array, or a sequence of root level values, in a format using specified class type.
+     * Gzip input is recognized and inflated on a separate thread while it is parsed.
+     * The stream holds the InputStream open and should be closed, preferably with try-with-resources.
+     * @param in InputStream to read
+     * @param tClass Class type of each element
+     * @param format The wire format
+     * @param <T> Type of each element
+     * @return Stream of elements
+     * @throws IOException If the input cannot be read
+     */
+    public <T> Stream<T> stream(InputStream in, Class<T> tClass, Format format) throws IOException {
+        MappingIterator<T> elements = reader(tClass, format).readValues(PipelinedGzipInputStream.decompressed(in));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(elements, Spliterator.ORDERED), false)
+                .onClose(() -> {
+                    try {
+                        elements.close();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    /**
+     * Lazily read the elements of an array, or a sequence of root level values, in the format of this Jackson5
+     * using specified class type. Gzip input is recognized and inflated on a separate thread while it is parsed.
+     * The stream holds the InputStream open and should be closed, preferably with try-with-resources.
+     * @param in InputStream to read
+     * @param tClass Class type of each element
+     * @param <T> Type of each element
+     * @return Stream of elements
+     * @throws IOException If the input cannot be read
+     */
+    public <T> Stream<T> stream(InputStream in, Class<T> tClass) throws IOException {
+        return stream(in, tClass, format());
     }
 
     /**
@@ -361,7 +1193,31 @@ public class Jackson5 {
      * @throws JsonProcessingException If errors occur during serialization
      */
     public <T> T deserialize(CharSequence json, Class<T> tClass, IFields fields) throws IOException {
-        return convert(json(json, fields), tClass);
+        return measure(DESERIALIZE, tClass, fields, json
+                , () -> mapper.convertValue(renderer().json(json, fields), tClass));
+    }
+
+    /**
+     * Create new object type from JSON string on the async executor. Cancelling the future stops the parse where it is.
+     * @param json JSON String to deserialize
+     * @param tClass Class type of the new object
+     * @param fields fields which are included/excluded in the class T, may be null
+     * @param <T> Type of the new object
+     * @return The future object, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public <T> CompletableFuture<T> deserializeAsync(CharSequence json, Class<T> tClass, IFields fields) {
+        return runner().submit(() -> fields == null ? deserialize(json, tClass) : deserialize(json, tClass, fields));
+    }
+
+    /**
+     * Create new object type from JSON string on the async executor. Cancelling the future stops the parse where it is.
+     * @param json JSON String to deserialize
+     * @param tClass Class type of the new object
+     * @param <T> Type of the new object
+     * @return The future object, failed with {@link AsyncLimitExceeded} if the executor is saturated
+     */
+    public <T> CompletableFuture<T> deserializeAsync(CharSequence json, Class<T> tClass) {
+        return deserializeAsync(json, tClass, null);
     }
 
     /**
@@ -372,7 +1228,7 @@ public class Jackson5 {
      * @return The resulting new typed list
      */
     public <T> List<T> convertCollection(Iterable<?> iterable, Class<?> tClass) {
-        return mapper.convertValue(iterable, TypeFactory.defaultInstance().constructCollectionType(List.class, tClass));
+        return measure(CONVERT, () -> mapper.convertValue(iterable, listType(tClass)));
     }
 
     /**
@@ -383,7 +1239,7 @@ public class Jackson5 {
      * @return The resulting new typed list
      */
     public <T> List<T> convertCollection(Object[] array, Class<?> tClass) {
-        return mapper.convertValue(array, TypeFactory.defaultInstance().constructCollectionType(List.class, tClass));
+        return measure(CONVERT, () -> mapper.convertValue(array, listType(tClass)));
     }
 
     /**
@@ -396,7 +1252,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during conversion
      */
     public <T> List<T> convertCollection(Iterable<?> iterable, Class<T> tClass, IFields fields) throws IOException {
-        return convertCollection(renderer().json(iterable, fields), tClass);
+        return measure(CONVERT, () -> mapper.convertValue(renderer().json(iterable, fields), listType(tClass)));
     }
 
     /**
@@ -409,7 +1265,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during conversion
      */
     public <T> List<T> convertCollection(Object[] array, Class<T> tClass, IFields fields) throws IOException {
-        return convertCollection(renderer().json(array, fields), tClass);
+        return measure(CONVERT, () -> mapper.convertValue(renderer().json(array, fields), listType(tClass)));
     }
 
     /**
@@ -421,7 +1277,7 @@ public class Jackson5 {
      * @throws IOException If errors occur during deserialization
      */
     public <T> List<T> deserializeCollection(CharSequence json, Class<T> tClass) throws IOException {
-        return mapper.readValue(json.toString(), TypeFactory.defaultInstance().constructCollectionType(List.class, tClass));
+        return measure(DESERIALIZE, tClass, null, json, () -> mapper.readValue(json.toString(), listType(tClass)));
     }
 
     /**
@@ -434,6 +1290,11 @@ public class Jackson5 {
      * @throws IOException If errors occur during deserialization
      */
     public <T> List<T> deserializeCollection(CharSequence json, Class<T> tClass, IFields fields) throws IOException {
-        return convertCollection(renderer().json(json, fields), tClass);
+        return measure(DESERIALIZE, tClass, fields, json
+                , () -> mapper.convertValue(renderer().json(json, fields), listType(tClass)));
+    }
+
+    private static CollectionType listType(Class<?> tClass) {
+        return TypeFactory.defaultInstance().constructCollectionType(List.class, tClass);
     }
 }
@@ -0,0 +1,63 @@
+package io.oreto.jackson;
+
+/**
+ * Listener notified of the work done by Jackson5 and Csv.
+ * Register one globally with {@link Jackson5#supply(Jackson5Metrics)} or per instance with
+ * {@link Jackson5#metrics(Jackson5Metrics)}. When no listener is registered nothing is measured,
+ * so the only cost is a null check. Every method has an empty default, implement only the ones of interest.
+ * Listeners are called from whichever thread did the work, so they must be thread safe.
+ * See {@link InMemoryMetrics} for a simple sink.
+ */
+public interface Jackson5Metrics {
+    /**
+     * The measured operations
+     */
+    enum Operation {
+        SERIALIZE, DESERIALIZE, JSON, MAP, CONVERT, CSV_READ, CSV_WRITE
+    }
+
+    /**
+     * What happened when a DSL or a render was looked up in a cache
+     */
+    enum Cache {
+        HIT, MISS, EVICTION
+    }
+
+    /**
+     * An operation completed, successfully or not
+     * @param name Name of the Jackson5 which did the work, the default Jackson5 for Csv
+     * @param operation The operation
+     * @param nanos How long it took
+     */
+    default void timed(String name, Operation operation, long nanos) {}
+
+    /**
+     * An operation produced output
+     * @param name Name of the Jackson5 which did the work, the default Jackson5 for Csv
+     * @param operation The operation
+     * @param bytes Size of the output encoded as UTF-8
+     */
+    default void bytes(String name, Operation operation, long bytes) {}
+
+    /**
+     * The Fields DSL pruned a tree
+     * @param name Name of the Jackson5 which did the work
+     * @param visited Number of JSON objects visited
+     * @param pruned Number of fields and array elements removed
+     */
+    default void nodes(String name, long visited, long pruned) {}
+
+    /**
+     * A DSL was looked up in the cache of parsed selections
+     * @param name Name of the Jackson5 which did the lookup
+     * @param event Whether the lookup hit, missed or evicted another DSL to make room
+     */
+    default void cache(String name, Cache event) {}
+
+    /**
+     * A render was looked up in the {@link RenderCache} of a Jackson5
+     * @param name Name of the Jackson5 which did the lookup
+     * @param event Whether the lookup hit, missed or evicted another render to make room
+     */
+    default void renderCache(String name, Cache event) {}
+}
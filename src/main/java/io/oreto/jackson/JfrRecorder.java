@@ -0,0 +1,100 @@
+package io.oreto.jackson;
+
+import jdk.jfr.*;
+
+/**
+ * Flight recorder events, loaded by {@link Flights} only when the jdk.jfr module is present
+ */
+final class JfrRecorder implements Flights.Recorder {
+    private final EventType[] types = new EventType[Flights.Kind.values().length];
+
+    JfrRecorder() {
+        for (Flights.Kind kind : Flights.Kind.values())
+            types[kind.ordinal()] = EventType.getEventType(create(kind).getClass());
+    }
+
+    @Override
+    public Flights.Span begin(Flights.Kind kind) {
+        // checking the settings first means nothing is allocated for a disabled event
+        if (!types[kind.ordinal()].isEnabled())
+            return null;
+        Jackson5Event event = create(kind);
+        event.begin();
+        return event;
+    }
+
+    private static Jackson5Event create(Flights.Kind kind) {
+        switch (kind) {
+            case SERIALIZE: return new SerializeEvent();
+            case DESERIALIZE: return new DeserializeEvent();
+            case PRUNE: return new PruneEvent();
+            case ROOT: return new RootEvent();
+            case COMPILE: return new CompileEvent();
+            case CSV_READ: return new CsvReadEvent();
+            default: return new CsvWriteEvent();
+        }
+    }
+
+    @Category("Jackson5")
+    @Enabled(false)
+    @StackTrace(false)
+    abstract static class Jackson5Event extends Event implements Flights.Span {
+        @Label("Jackson5")
+        @Description("Name of the Jackson5 instance")
+        String name;
+
+        @Label("Type")
+        @Description("Class being serialized or deserialized")
+        Class<?> type;
+
+        @Label("Fields")
+        @Description("The Fields DSL, truncated")
+        String dsl;
+
+        @Label("Input Size")
+        @Description("UTF-8 bytes of text input, objects visited by prune, characters of a compiled DSL")
+        long input;
+
+        @Label("Output Size")
+        @Description("UTF-8 bytes of text output, elements of collections, fields removed by prune")
+        long output;
+
+        @Override
+        public void end(String name, Class<?> type, String dsl, long input, long output) {
+            this.name = name;
+            this.type = type;
+            this.dsl = Flights.truncate(dsl);
+            this.input = input;
+            this.output = output;
+            commit();
+        }
+    }
+
+    @Name("io.oreto.jackson.Serialize")
+    @Label("Serialize")
+    static class SerializeEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.Deserialize")
+    @Label("Deserialize")
+    static class DeserializeEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.Prune")
+    @Label("Prune")
+    static class PruneEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.Root")
+    @Label("Root Resolution")
+    static class RootEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.Compile")
+    @Label("DSL Compilation")
+    static class CompileEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.CsvRead")
+    @Label("CSV Read")
+    static class CsvReadEvent extends Jackson5Event {}
+
+    @Name("io.oreto.jackson.CsvWrite")
+    @Label("CSV Write")
+    static class CsvWriteEvent extends Jackson5Event {}
+}
@@ -0,0 +1,210 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.oreto.jackson.Util.Str;
+
+/**
+ * Produces RFC 6902 JSON Patches between the successive renders of each client.
+ * Only a digest of the previous render is kept: the keys of its objects, the length of its arrays
+ * and a 64-bit hash of every value. Subtrees whose hashes are equal are skipped without being visited,
+ * so the work and the size of a patch follow the size of the change rather than the size of the document.
+ */
+final class JsonPatch {
+    private static final JsonNodeFactory nodes = JsonNodeFactory.instance;
+    private static final long OBJECT = 0x6f626a656374L;
+    private static final long ARRAY = 0x6172726179L;
+
+    private final Map<Object, Digest> versions = new ConcurrentHashMap<>();
+
+    /**
+     * Diff a render against the previous render of the client, and remember it as the previous render
+     * @param client The client key
+     * @param json The new render
+     * @return The patch, which replaces the whole document the first time
+     */
+    ArrayNode diff(Object client, JsonNode json) {
+        ArrayNode ops = nodes.arrayNode();
+        Digest digest = digest(json);
+        versions.compute(client, (key, previous) -> {
+            if (previous == null)
+                ops.add(op("replace", Str.EMPTY, json));
+            else
+                diff(previous.hash, previous, digest.hash, digest, json, Str.EMPTY, ops);
+            return digest;
+        });
+        return ops;
+    }
+
+    /**
+     * Forget the previous render of a client, the next patch replaces the whole document
+     * @param client The client key
+     */
+    void forget(Object client) {
+        versions.remove(client);
+    }
+
+    /**
+     * Compare the values at a path by hash, descending only into the containers which differ
+     */
+    private static void diff(long oldHash
+            , Digest old
+            , long newHash
+            , Digest digest
+            , JsonNode json
+            , String path
+            , ArrayNode ops) {
+        if (oldHash == newHash)
+            return;
+        if (old == null || digest == null || !old.container() || !digest.container() || old.array != digest.array) {
+            ops.add(op("replace", path, json));
+            return;
+        }
+        if (digest.array) {
+            int oldSize = old.hashes.length;
+            int newSize = digest.hashes.length;
+            int common = Math.min(oldSize, newSize);
+            for (int i = 0; i < common; i++)
+                diff(old.hashes[i], old.child(i), digest.hashes[i], digest.child(i), json.get(i), path + '/' + i, ops);
+            // remove from the end so the indices of the ops stay valid
+            for (int i = oldSize - 1; i >= newSize; i--)
+                ops.add(op("remove", path + '/' + i, null));
+            for (int i = common; i < newSize; i++)
+                ops.add(op("add", path + "/-", json.get(i)));
+        } else {
+            Map<String, Integer> index = new HashMap<>();
+            for (int i = 0; i < old.keys.length; i++) {
+                index.put(old.keys[i], i);
+                if (!json.has(old.keys[i]))
+                    ops.add(op("remove", path + '/' + escape(old.keys[i]), null));
+            }
+            for (int i = 0; i < digest.keys.length; i++) {
+                String key = digest.keys[i];
+                Integer j = index.get(key);
+                String child = path + '/' + escape(key);
+                if (j == null)
+                    ops.add(op("add", child, json.get(key)));
+                else
+                    diff(old.hashes[j], old.child(j), digest.hashes[i], digest.child(i), json.get(key), child, ops);
+            }
+        }
+    }
+
+    private static ObjectNode op(String op, String path, JsonNode value) {
+        ObjectNode node = nodes.objectNode().put("op", op).put("path", path);
+        if (value != null)
+            node.set("value", value);
+        return node;
+    }
+
+    /**
+     * Escape a key as a JSON Pointer reference token
+     */
+    static String escape(String key) {
+        if (key.indexOf('~') < 0 && key.indexOf('/') < 0)
+            return key;
+        return key.replace("~", "~0").replace("/", "~1");
+    }
+
+    /**
+     * Digest a tree
+     * @param json The tree
+     * @return The digest, whose root holds the hash of the whole tree
+     */
+    static Digest digest(JsonNode json) {
+        if (json.isContainerNode())
+            return container(json);
+        Digest digest = new Digest(false, null, new long[0], null);
+        digest.hash = hash(json);
+        return digest;
+    }
+
+    private static Digest container(JsonNode json) {
+        int size = json.size();
+        boolean array = json.isArray();
+        String[] keys = array ? null : new String[size];
+        long[] hashes = new long[size];
+        Digest[] children = null;
+        long hash = array ? ARRAY : OBJECT;
+        Iterator<Map.Entry<String, JsonNode>> fields = array ? null : json.fields();
+        for (int i = 0; i < size; i++) {
+            JsonNode child;
+            if (array) {
+                child = json.get(i);
+            } else {
+                Map.Entry<String, JsonNode> field = fields.next();
+                keys[i] = field.getKey();
+                hash = mix(hash, hash(keys[i]));
+                child = field.getValue();
+            }
+            if (child.isContainerNode()) {
+                if (children == null)
+                    children = new Digest[size];
+                children[i] = container(child);
+                hashes[i] = children[i].hash;
+            } else {
+                hashes[i] = hash(child);
+            }
+            hash = mix(hash, hashes[i]);
+        }
+        Digest digest = new Digest(array, keys, hashes, children);
+        digest.hash = mix(hash, size);
+        return digest;
+    }
+
+    private static long hash(JsonNode value) {
+        return mix(value.getNodeType().ordinal(), hash(value.asText()));
+    }
+
+    /**
+     * 64-bit FNV-1a
+     */
+    private static long hash(String s) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            hash ^= s.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 31);
+    }
+
+    /**
+     * The digest of a render: the keys and hashes of the values of a container, and the digests of its containers
+     */
+    static final class Digest {
+        final boolean array;
+        final String[] keys;
+        final long[] hashes;
+        // null where the value is not a container, or altogether when none is
+        final Digest[] children;
+        long hash;
+
+        boolean container() {
+            return array || keys != null;
+        }
+
+        Digest child(int i) {
+            return children == null ? null : children[i];
+        }
+
+        private Digest(boolean array, String[] keys, long[] hashes, Digest[] children) {
+            this.array = array;
+            this.keys = keys;
+            this.hashes = hashes;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.oreto.jackson;
+
+import java.util.Arrays;
+
+/**
+ * Matches object keys against a set of field patterns: exact names and prefix globs such as addr* or *.
+ * The patterns are compiled into a character trie, so matching a key walks at most the length of the key
+ * however many patterns there are. Built while a DSL is parsed, then only read.
+ */
+final class KeyMatcher {
+    private final Node root = new Node();
+
+    /**
+     * Add a pattern
+     * @param pattern An exact name, or a prefix followed by *
+     * @return This KeyMatcher
+     */
+    KeyMatcher add(String pattern) {
+        boolean prefix = pattern.endsWith("*");
+        Node node = root;
+        int len = prefix ? pattern.indexOf('*') : pattern.length();
+        for (int i = 0; i < len; i++)
+            node = node.child(pattern.charAt(i), true);
+        if (prefix)
+            node.prefix = true;
+        else
+            node.exact = true;
+        return this;
+    }
+
+    /**
+     * @param pattern A field name from the DSL
+     * @return true if the name is a glob
+     * @throws IllegalArgumentException If a * is anywhere but at the end of the name, other than **
+     */
+    static boolean isGlob(String pattern) {
+        int star = pattern.indexOf('*');
+        if (star < 0)
+            return false;
+        if (star != pattern.length() - 1 && !FieldsDSL.DEEP.equals(pattern))
+            throw new IllegalArgumentException(
+                    String.format("%s: only a trailing * is supported in a field name", pattern));
+        return true;
+    }
+
+    /**
+     * @param key An object key
+     * @return true if any pattern matches the key
+     */
+    boolean matches(String key) {
+        Node node = root;
+        int len = key.length();
+        for (int i = 0; i < len; i++) {
+            if (node.prefix)
+                return true;
+            node = node.child(key.charAt(i), false);
+            if (node == null)
+                return false;
+        }
+        return node.prefix || node.exact;
+    }
+
+    private static class Node {
+        private char[] chars = new char[0];
+        private Node[] children = new Node[0];
+        boolean exact;
+        boolean prefix;
+
+        Node child(char c, boolean create) {
+            // fan out is small, so a linear scan beats hashing a boxed character
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == c)
+                    return children[i];
+            }
+            if (!create)
+                return null;
+            int n = chars.length;
+            chars = Arrays.copyOf(chars, n + 1);
+            children = Arrays.copyOf(children, n + 1);
+            chars[n] = c;
+            children[n] = new Node();
+            return children[n];
+        }
+    }
+}
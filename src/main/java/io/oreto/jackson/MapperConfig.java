@@ -45,8 +45,9 @@ public class MapperConfig {
             , String dateTimePattern) {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern(datePattern);
         DateTimeFormatter dateTimeFormatter = DateTimeFormatter.ofPattern(dateTimePattern);
-        DateFormat dateFormat = new SimpleDateFormat(dateTimePattern);
-        DateFormat timeFormatter = new SimpleDateFormat(timePattern);
+        // SimpleDateFormat is not thread safe and the mapper is shared, so each thread gets its own
+        ThreadLocal<DateFormat> dateFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat(dateTimePattern));
+        ThreadLocal<DateFormat> timeFormatter = ThreadLocal.withInitial(() -> new SimpleDateFormat(timePattern));
 
         return new JavaTimeModule()
                 .addSerializer(LocalDate.class, new LocalDateSerializer(dateFormatter))
@@ -58,7 +59,7 @@ public class MapperConfig {
                     @Override
                     public void serialize(Date value, JsonGenerator gen, SerializerProvider serializers)
                             throws IOException {
-                        gen.writeString(dateFormat.format(value));
+                        gen.writeString(dateFormat.get().format(value));
                     }
                 })
                 .addDeserializer(Date.class, new JsonDeserializer<Date>() {
@@ -66,7 +67,7 @@ public class MapperConfig {
                     public Date deserialize(JsonParser p, DeserializationContext ctxt)
                             throws IOException {
                         try {
-                            return dateFormat.parse(p.getText());
+                            return dateFormat.get().parse(p.getText());
                         } catch (ParseException e) {
                             throw new IOException(e);
                         }
@@ -78,7 +79,7 @@ public class MapperConfig {
                     public void serialize(java.sql.Date value
                             , JsonGenerator gen
                             , SerializerProvider serializers) throws IOException {
-                        gen.writeString(dateFormat.format(value));
+                        gen.writeString(dateFormat.get().format(value));
                     }
                 })
                 .addDeserializer(java.sql.Date.class, new JsonDeserializer<java.sql.Date>() {
@@ -86,7 +87,7 @@ public class MapperConfig {
                     public java.sql.Date deserialize(JsonParser p, DeserializationContext ctxt)
                             throws IOException {
                         try {
-                            return new java.sql.Date(dateFormat.parse(p.getText()).getTime());
+                            return new java.sql.Date(dateFormat.get().parse(p.getText()).getTime());
                         } catch (ParseException e) {
                             throw new IOException(e);
                         }
@@ -97,7 +98,7 @@ public class MapperConfig {
                     @Override
                     public void serialize(Time value, JsonGenerator gen, SerializerProvider serializers)
                             throws IOException {
-                        gen.writeString(timeFormatter.format(value));
+                        gen.writeString(timeFormatter.get().format(value));
                     }
                 })
                 .addDeserializer(Time.class, new JsonDeserializer<Time>() {
@@ -105,7 +106,7 @@ public class MapperConfig {
                     public Time deserialize(JsonParser p, DeserializationContext ctxt)
                             throws IOException {
                         try {
-                            return new Time(dateFormat.parse(p.getText()).getTime());
+                            return new Time(dateFormat.get().parse(p.getText()).getTime());
                         } catch (ParseException e) {
                             throw new IOException(e);
                         }
@@ -141,6 +142,7 @@ public class MapperConfig {
     private String dateFormat = DEFAULT_DATE_PATTERN;
     private String timeFormat = DEFAULT_TIME_PATTERN;
     private String dateTimeFormat = DEFAULT_DATE_TIME_PATTERN;
+    private Format format = Format.JSON;
     private final SimpleModule module = new SimpleModule();
     private final List<Module> modules = new ArrayList<Module>() {{ add(module); }};
     private final Map<JsonParser.Feature, Boolean> features = new HashMap<>();
@@ -154,7 +156,16 @@ public class MapperConfig {
      * @return A new ObjectMapper
      */
     public ObjectMapper build() {
-        ObjectMapper mapper = new ObjectMapper();
+        return configure(new ObjectMapper());
+    }
+
+    /**
+     * Apply this configuration to an existing ObjectMapper, such as a CsvMapper.
+     * @param mapper The ObjectMapper to configure
+     * @param <M> The type of ObjectMapper
+     * @return The configured ObjectMapper
+     */
+    <M extends ObjectMapper> M configure(M mapper) {
         mapper.setMixIns(mixins());
         modules().forEach(mapper::registerModule);
         mapper.registerModule(timeModule());
@@ -192,6 +203,15 @@ public class MapperConfig {
         return this;
     }
 
+    /**
+     * @param format Wire format of the bytes and streams of a Jackson5 supplied with this config, defaults to JSON
+     * @return The MapperConfig
+     */
+    public MapperConfig format(Format format) {
+        this.format = format;
+        return this;
+    }
+
     /**
      * Add a custom serializer to the
      * @param tClass Class to provide serializer for
@@ -288,6 +308,9 @@ public class MapperConfig {
     String dateTimeFormat() {
         return dateTimeFormat;
     }
+    Format format() {
+        return format;
+    }
     List<Module> modules() {
         return modules;
     }
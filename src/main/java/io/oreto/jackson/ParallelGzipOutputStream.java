@@ -0,0 +1,169 @@
+package io.oreto.jackson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * OutputStream which gzips blocks of its input on a pool of worker threads.
+ * Each block is compressed independently into a complete gzip member and the members are written in order,
+ * which any gzip reader, including {@link java.util.zip.GZIPInputStream}, reads as one stream.
+ * Use it as the target of {@link Csv#write(OutputStream)} or {@link Jackson5#write(OutputStream, Object)}.
+ */
+public class ParallelGzipOutputStream extends OutputStream {
+    /**
+     * Default size of the uncompressed blocks
+     */
+    public static final int BLOCK_SIZE = 1024 * 1024;
+
+    private final OutputStream out;
+    private final int blockSize;
+    private final int level;
+    private final int maxPending;
+    private final ExecutorService pool;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+    private byte[] block;
+    private int count;
+    private boolean written;
+    private boolean closed;
+
+    /**
+     * Constructor
+     * @param out The stream receiving the gzip members
+     * @param blockSize The size of each uncompressed block
+     * @param parallelism The number of blocks compressed at the same time
+     * @param level The deflate compression level, 0-9
+     */
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, int parallelism, int level) {
+        if (blockSize <= 0 || parallelism <= 0)
+            throw new IllegalArgumentException("blockSize and parallelism must be positive");
+        this.out = out;
+        this.blockSize = blockSize;
+        this.level = level;
+        // bound the memory held by blocks which are compressing or waiting to be written
+        this.maxPending = parallelism * 2;
+        this.pool = Workers.pool("jackson5-gzip", parallelism);
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Constructor
+     * @param out The stream receiving the gzip members
+     * @param blockSize The size of each uncompressed block
+     * @param parallelism The number of blocks compressed at the same time
+     */
+    public ParallelGzipOutputStream(OutputStream out, int blockSize, int parallelism) {
+        this(out, blockSize, parallelism, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Constructor using the default block size and one thread per processor
+     * @param out The stream receiving the gzip members
+     */
+    public ParallelGzipOutputStream(OutputStream out) {
+        this(out, BLOCK_SIZE, Workers.parallelism());
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+        block[count++] = (byte) b;
+        if (count == blockSize)
+            submit();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+        while (len > 0) {
+            int n = Math.min(len, blockSize - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == blockSize)
+                submit();
+        }
+    }
+
+    /**
+     * Compress the buffered bytes as a member of their own and write every pending member
+     * @throws IOException If compressing or writing fails
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (count > 0)
+            submit();
+        while (!pending.isEmpty())
+            drain();
+        out.flush();
+    }
+
+    /**
+     * Write the remaining members, then close the underlying stream
+     * @throws IOException If compressing or writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        try {
+            // an empty stream is still a valid gzip stream of one empty member
+            if (count > 0 || !written)
+                submit();
+            while (!pending.isEmpty())
+                drain();
+            out.flush();
+        } finally {
+            closed = true;
+            pending.forEach(future -> future.cancel(true));
+            pool.shutdownNow();
+            out.close();
+        }
+    }
+
+    private void submit() throws IOException {
+        byte[] bytes = block;
+        int length = count;
+        pending.add(pool.submit(() -> compress(bytes, length)));
+        written = true;
+        block = new byte[blockSize];
+        count = 0;
+        while (pending.size() >= maxPending)
+            drain();
+    }
+
+    private void drain() throws IOException {
+        try {
+            out.write(pending.removeFirst().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    private byte[] compress(byte[] bytes, int length) throws IOException {
+        ByteArrayOutputStream member = new ByteArrayOutputStream(Math.max(length / 2, 64));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(member, 8192) {{ def.setLevel(level); }}) {
+            gzip.write(bytes, 0, length);
+        }
+        return member.toByteArray();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+}
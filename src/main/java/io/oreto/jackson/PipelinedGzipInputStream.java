@@ -0,0 +1,186 @@
+package io.oreto.jackson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.PushbackInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * InputStream which inflates gzip input on its own thread, one stage ahead of the reader.
+ * Inflated bytes are handed over through a bounded queue of buffers which are recycled once they have been read,
+ * so decompression and parsing run at the same time in constant memory.
+ * Concatenated gzip members, such as the output of {@link ParallelGzipOutputStream}, are read as one stream.
+ */
+public class PipelinedGzipInputStream extends InputStream {
+    /**
+     * Default size of the inflated buffers
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Default number of buffers shared by the two stages
+     */
+    public static final int BUFFERS = 4;
+
+    /**
+     * Wrap a stream so that gzip input, recognized by its magic bytes, is inflated by a pipelined stage
+     * @param in The stream which may or may not be gzip
+     * @return A PipelinedGzipInputStream if the stream is gzip, otherwise a stream with the same content as in
+     * @throws IOException If the first bytes cannot be read
+     */
+    public static InputStream decompressed(InputStream in) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 2);
+        byte[] magic = new byte[2];
+        int n = 0;
+        for (int read = 0; n < 2 && read >= 0; n += Math.max(read, 0))
+            read = pushback.read(magic, n, 2 - n);
+        if (n > 0)
+            pushback.unread(magic, 0, n);
+        return n == 2 && (magic[0] & 0xFF) == 0x1f && (magic[1] & 0xFF) == 0x8b
+                ? new PipelinedGzipInputStream(pushback)
+                : pushback;
+    }
+
+    private static final Chunk END = new Chunk(null, -1, null);
+
+    private final InputStream in;
+    private final int bufferSize;
+    private final BlockingQueue<byte[]> free;
+    private final BlockingQueue<Chunk> full;
+    private final ExecutorService inflater;
+    private Chunk chunk;
+    private int position;
+    private volatile boolean closed;
+
+    /**
+     * Constructor
+     * @param in The gzip input
+     * @param bufferSize The size of each inflated buffer
+     * @param buffers The number of buffers, which bounds how far inflation runs ahead of reading
+     */
+    public PipelinedGzipInputStream(InputStream in, int bufferSize, int buffers) {
+        if (bufferSize <= 0 || buffers <= 0)
+            throw new IllegalArgumentException("bufferSize and buffers must be positive");
+        this.in = in;
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<>(buffers);
+        // room for every buffer plus the end of stream or failure
+        this.full = new ArrayBlockingQueue<>(buffers + 1);
+        for (int i = 0; i < buffers; i++)
+            free.add(new byte[bufferSize]);
+        this.inflater = Workers.pool("jackson5-inflate", 1);
+        inflater.execute(this::inflate);
+        // the worker thread exits once inflation finishes
+        inflater.shutdown();
+    }
+
+    /**
+     * Constructor using the default buffers
+     * @param in The gzip input
+     */
+    public PipelinedGzipInputStream(InputStream in) {
+        this(in, BUFFER_SIZE, BUFFERS);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!next())
+            return -1;
+        return chunk.buffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+        if (!next())
+            return -1;
+        int n = Math.min(len, chunk.length - position);
+        System.arraycopy(chunk.buffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        ensureOpen();
+        return chunk == null || chunk == END ? 0 : chunk.length - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        inflater.shutdownNow();
+        in.close();
+    }
+
+    /**
+     * Make the current chunk readable, waiting for the next one from the inflater when it is used up
+     * @return false at the end of the stream
+     */
+    private boolean next() throws IOException {
+        ensureOpen();
+        if (chunk == END)
+            return false;
+        if (chunk != null && position < chunk.length)
+            return true;
+        if (chunk != null)
+            free.add(chunk.buffer);
+        try {
+            chunk = full.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+        position = 0;
+        if (chunk.failure != null) {
+            IOException failure = chunk.failure;
+            chunk = END;
+            throw failure;
+        }
+        return chunk != END;
+    }
+
+    private void inflate() {
+        try (GZIPInputStream gzip = new GZIPInputStream(in, bufferSize)) {
+            int n = 0;
+            while (!closed && n >= 0) {
+                byte[] buffer = free.take();
+                int length = 0;
+                for (n = 0; length < buffer.length && n >= 0; length += Math.max(n, 0))
+                    n = gzip.read(buffer, length, buffer.length - length);
+                if (length > 0)
+                    full.put(new Chunk(buffer, length, null));
+            }
+            full.put(END);
+        } catch (InterruptedException ignored) {
+            // closed by the reader
+        } catch (IOException e) {
+            if (!closed)
+                full.offer(new Chunk(null, -1, e));
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    private static class Chunk {
+        final byte[] buffer;
+        final int length;
+        final IOException failure;
+
+        Chunk(byte[] buffer, int length, IOException failure) {
+            this.buffer = buffer;
+            this.length = length;
+            this.failure = failure;
+        }
+    }
+}
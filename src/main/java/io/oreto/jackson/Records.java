@@ -0,0 +1,17 @@
+package io.oreto.jackson;
+
+/**
+ * Tells records apart from other classes, so their selected properties can be serialized alone.
+ * Java 8 has no records, the multi-release jar supplies the version which asks the class.
+ */
+final class Records {
+    private Records() {}
+
+    /**
+     * @param type The class of a value
+     * @return true if the class is a record
+     */
+    static boolean isRecord(Class<?> type) {
+        return false;
+    }
+}
@@ -0,0 +1,365 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in cache of rendered output, for reference data which is served over and over with a few fields expressions.
+ * Renders are keyed by the identity of the object, or by a version key supplied by the caller, together with
+ * the canonical fields expression, the pretty flag and the {@link Format}, and kept as encoded bytes on or off the heap.
+ * The oldest renders are evicted first once there are too many or they weigh too much.
+ * Concurrent misses of the same key render only once, the other callers wait for that render.
+ * <pre>
+ *     jackson5.renderCache(new RenderCache().maxEntries(1000).maxBytes(64 * 1024 * 1024));
+ *     jackson5.write(out, catalog.getVersion(), catalog, fields, false);
+ * </pre>
+ * Objects keyed by identity must not change while they are cached, otherwise key them by version
+ * or {@link #invalidate(Object)} them.
+ */
+public class RenderCache {
+    private final Map<Key, CompletableFuture<Entry>> entries = new ConcurrentHashMap<>();
+    // cached renders in insertion order, evicted from the head
+    private final Queue<Slot> order = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong weight = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private volatile int maxEntries = 1024;
+    private volatile long maxBytes = 16 * 1024 * 1024;
+    private volatile boolean offHeap;
+
+    /**
+     * @param maxEntries Maximum number of cached renders, defaults to 1024
+     * @return This RenderCache
+     */
+    public RenderCache maxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /**
+     * @param maxBytes Maximum total bytes of the cached renders, defaults to 16 MB.
+     *                 A render bigger than this is never cached.
+     * @return This RenderCache
+     */
+    public RenderCache maxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        return this;
+    }
+
+    /**
+     * @param offHeap If true renders are kept in direct buffers, out of the way of the garbage collector.
+     *                Applies to renders cached from now on.
+     * @return This RenderCache
+     */
+    public RenderCache offHeap(boolean offHeap) {
+        this.offHeap = offHeap;
+        return this;
+    }
+
+    /**
+     * @return The number of lookups which found a render, including those which waited for one in flight
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return The number of lookups which had to render
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of renders evicted to make room
+     */
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return The number of cached renders
+     */
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return The total bytes of the cached renders
+     */
+    public long bytes() {
+        return weight.get();
+    }
+
+    /**
+     * Forget every render of an object or version key, whatever its fields
+     * @param key The object, or the version key it was rendered with
+     */
+    public void invalidate(Object key) {
+        entries.keySet().removeIf(it -> it.identity ? it.key == key : Objects.equals(it.key, key));
+        recount();
+    }
+
+    /**
+     * Forget every render
+     */
+    public void clear() {
+        entries.clear();
+        recount();
+    }
+
+    private void recount() {
+        // renders which are gone from the map no longer count, their slots are skipped when evicting
+        order.removeIf(slot -> entries.get(slot.key) != slot.future);
+        int n = 0;
+        long bytes = 0;
+        for (Slot slot : order) {
+            n++;
+            bytes += slot.size;
+        }
+        size.set(n);
+        weight.set(bytes);
+    }
+
+    /**
+     * Look up a render, rendering it on a miss
+     * @param key The key
+     * @param name Name of the Jackson5, for the metrics
+     * @param metrics The metrics listener, may be null
+     * @param render Renders the encoded bytes
+     * @return The render
+     * @throws JsonProcessingException If the render fails, in this thread or the one it waited for
+     */
+    Entry get(Key key
+            , String name
+            , Jackson5Metrics metrics
+            , Jackson5.Call<byte[], JsonProcessingException> render) throws JsonProcessingException {
+        CompletableFuture<Entry> future = entries.get(key);
+        if (future == null) {
+            CompletableFuture<Entry> created = new CompletableFuture<>();
+            future = entries.putIfAbsent(key, created);
+            if (future == null)
+                return load(key, created, name, metrics, render);
+        }
+        hits.increment();
+        if (metrics != null)
+            metrics.renderCache(name, Jackson5Metrics.Cache.HIT);
+        return await(future);
+    }
+
+    private Entry load(Key key
+            , CompletableFuture<Entry> future
+            , String name
+            , Jackson5Metrics metrics
+            , Jackson5.Call<byte[], JsonProcessingException> render) throws JsonProcessingException {
+        misses.increment();
+        if (metrics != null)
+            metrics.renderCache(name, Jackson5Metrics.Cache.MISS);
+        Entry entry;
+        try {
+            entry = new Entry(render.call(), offHeap);
+        } catch (JsonProcessingException | RuntimeException | Error e) {
+            // the next lookup renders again
+            entries.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+        future.complete(entry);
+        // a render bigger than the cache would evict everything else and then itself, so it is only shared with waiters
+        if (entry.size() > maxBytes)
+            entries.remove(key, future);
+        // unless it was invalidated while rendering
+        else if (entries.get(key) == future) {
+            order.add(new Slot(key, future, entry.size()));
+            size.incrementAndGet();
+            weight.addAndGet(entry.size());
+            evict(name, metrics);
+        }
+        return entry;
+    }
+
+    private void evict(String name, Jackson5Metrics metrics) {
+        while (size.get() > maxEntries || weight.get() > maxBytes) {
+            Slot eldest = order.poll();
+            if (eldest == null)
+                break;
+            if (entries.remove(eldest.key, eldest.future)) {
+                size.decrementAndGet();
+                weight.addAndGet(-eldest.size);
+                evictions.increment();
+                if (metrics != null)
+                    metrics.renderCache(name, Jackson5Metrics.Cache.EVICTION);
+            }
+        }
+    }
+
+    private static Entry await(CompletableFuture<Entry> future) throws JsonProcessingException {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    // the render is shared, so finish waiting for it and restore the interrupt afterwards
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof JsonProcessingException)
+                        throw (JsonProcessingException) cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new IllegalStateException(cause);
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A key of a render
+     */
+    static final class Key {
+        /**
+         * Key a render by the identity of the object
+         */
+        static Key of(Object o, IFields fields, boolean pretty, Format format) {
+            return new Key(o, true, DslProfiler.canonical(fields), pretty, format);
+        }
+
+        /**
+         * Key a render by a version key which is compared with equals
+         */
+        static Key of(Object version, Object o, IFields fields, boolean pretty, Format format) {
+            return version == null
+                    ? of(o, fields, pretty, format)
+                    : new Key(version, false, DslProfiler.canonical(fields), pretty, format);
+        }
+
+        private final Object key;
+        private final boolean identity;
+        private final String dsl;
+        private final boolean pretty;
+        private final Format format;
+        private final int hash;
+
+        private Key(Object key, boolean identity, String dsl, boolean pretty, Format format) {
+            this.key = key;
+            this.identity = identity;
+            this.dsl = dsl;
+            this.pretty = pretty;
+            this.format = format;
+            int hash = identity ? System.identityHashCode(key) : key.hashCode();
+            hash = 31 * hash + dsl.hashCode();
+            hash = 31 * hash + (pretty ? 1 : 0);
+            this.hash = 31 * hash + format.ordinal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash
+                    && identity == other.identity
+                    && pretty == other.pretty
+                    && format == other.format
+                    && (identity ? key == other.key : key.equals(other.key))
+                    && dsl.equals(other.dsl);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached render
+     */
+    static final class Entry {
+        private final byte[] heap;
+        private final ByteBuffer direct;
+
+        private Entry(byte[] bytes, boolean offHeap) {
+            if (offHeap) {
+                this.heap = null;
+                this.direct = (ByteBuffer) ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+            } else {
+                this.heap = bytes;
+                this.direct = null;
+            }
+        }
+
+        int size() {
+            return heap == null ? direct.capacity() : heap.length;
+        }
+
+        /**
+         * @return A copy of the bytes
+         */
+        byte[] bytes() {
+            if (heap != null)
+                return heap.clone();
+            byte[] bytes = new byte[direct.capacity()];
+            direct.duplicate().get(bytes);
+            return bytes;
+        }
+
+        /**
+         * @return The bytes decoded as a String
+         */
+        String string() {
+            return new String(heap == null ? bytes() : heap, StandardCharsets.UTF_8);
+        }
+
+        void write(OutputStream out) throws IOException {
+            if (heap != null) {
+                out.write(heap);
+                return;
+            }
+            ByteBuffer buffer = direct.duplicate();
+            byte[] chunk = new byte[Math.min(buffer.remaining(), 8192)];
+            while (buffer.hasRemaining()) {
+                int n = Math.min(chunk.length, buffer.remaining());
+                buffer.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+    }
+
+    /**
+     * A cached render in eviction order
+     */
+    private static final class Slot {
+        final Key key;
+        final CompletableFuture<Entry> future;
+        final int size;
+
+        Slot(Key key, CompletableFuture<Entry> future, int size) {
+            this.key = key;
+            this.future = future;
+            this.size = size;
+        }
+    }
+}
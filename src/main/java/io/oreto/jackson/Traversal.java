@@ -0,0 +1,354 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.jsonFormatVisitors.JsonFormatVisitorWrapper;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.type.*;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Iterator;
+
+/**
+ * One walk of an object graph under a {@link TraversalBudget}.
+ * Every serializer of a budgeted mapper is wrapped, and the wrapper asks the walk of the current call
+ * whether to go on before the value is serialized, so the graph below a cut is never visited.
+ */
+final class Traversal {
+    /**
+     * Copy a mapper, wrapping all of its value serializers. The copy walks normally unless it is given a Traversal.
+     * @param mapper The mapper to copy
+     * @return The budgeted mapper
+     */
+    static ObjectMapper mapper(ObjectMapper mapper) {
+        ObjectMapper budgeted = mapper.copy();
+        budgeted.setSerializerFactory(budgeted.getSerializerFactory().withSerializerModifier(new Modifier()));
+        return budgeted;
+    }
+
+    /**
+     * Convert an object to a tree like {@link ObjectMapper#valueToTree(Object)}, within a budget
+     * @param mapper A mapper made by {@link #mapper(ObjectMapper)}
+     * @param o The object to convert
+     * @param budget The budget of the walk
+     * @return The tree
+     * @throws TraversalBudgetExceeded If a budget runs out with the {@link TraversalBudget.Policy#THROW} policy
+     */
+    static JsonNode tree(ObjectMapper mapper, Object o, TraversalBudget budget) throws JsonProcessingException {
+        TokenBuffer buffer = tokens(mapper, o, budget);
+        try {
+            return mapper.readTree(buffer.asParser());
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a TokenBuffer does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Serialize an object to the tokens {@link #tree(ObjectMapper, Object, TraversalBudget)} is built from
+     * @param mapper A mapper made by {@link #mapper(ObjectMapper)}
+     * @param o The object to serialize
+     * @param budget The budget of the walk
+     * @return The tokens
+     * @throws TraversalBudgetExceeded If a budget runs out with the {@link TraversalBudget.Policy#THROW} policy
+     */
+    static TokenBuffer tokens(ObjectMapper mapper, Object o, TraversalBudget budget) throws JsonProcessingException {
+        TokenBuffer buffer = new TokenBuffer(mapper, false);
+        if (mapper.isEnabled(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS))
+            buffer = buffer.forceUseOfBigDecimal(true);
+        try {
+            mapper.writer()
+                    .without(SerializationFeature.WRAP_ROOT_VALUE)
+                    .withAttribute(Traversal.class, new Traversal(budget))
+                    .writeValue(Async.cancellable(buffer), o);
+            return buffer;
+        } catch (JsonMappingException e) {
+            // bean serializers add the path to the exceptions of their properties
+            for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                if (cause instanceof TraversalBudgetExceeded)
+                    throw (TraversalBudgetExceeded) cause;
+            }
+            throw e;
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            // a TokenBuffer does no I/O
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    private final TraversalBudget budget;
+    private int depth;
+    private long nodes;
+    // the array whose remaining elements are skipped after a cut, and the depth of the walk at the cut
+    private JsonStreamContext cut;
+    private int cutDepth;
+
+    private Traversal(TraversalBudget budget) {
+        this.budget = budget;
+    }
+
+    private void serialize(Object value
+            , JsonGenerator gen
+            , SerializerProvider provider
+            , JsonSerializer<Object> serializer
+            , TypeSerializer typeSerializer) throws IOException {
+        if (cut != null && cut == gen.getOutputContext())
+            return;
+        if (depth >= budget.maxDepth()) {
+            cut(gen, "depth", depth + 1, budget.maxDepth());
+            return;
+        }
+        if (nodes >= budget.maxNodes()) {
+            cut(gen, "nodes", nodes + 1, budget.maxNodes());
+            return;
+        }
+        nodes++;
+        depth++;
+        try {
+            int size = elements(value);
+            if (size > budget.maxElements()) {
+                if (budget.policy() == TraversalBudget.Policy.THROW)
+                    throw new TraversalBudgetExceeded("elements", size, budget.maxElements());
+                truncate(value, gen, provider);
+            } else if (typeSerializer == null) {
+                serializer.serialize(value, gen, provider);
+            } else {
+                serializer.serializeWithType(value, gen, provider, typeSerializer);
+            }
+        } finally {
+            depth--;
+            if (cutDepth > depth)
+                cut = null;
+        }
+    }
+
+    /**
+     * Mark the value which was not serialized, or throw
+     */
+    private void cut(JsonGenerator gen, String name, long value, long max) throws IOException {
+        if (budget.policy() == TraversalBudget.Policy.THROW)
+            throw new TraversalBudgetExceeded(name, value, max);
+        gen.writeString(budget.marker());
+        JsonStreamContext context = gen.getOutputContext();
+        if (context.inArray()) {
+            // one marker is enough, the rest of the array is skipped
+            cut = context;
+            cutDepth = depth;
+        }
+    }
+
+    /**
+     * @return The number of elements of a collection or an array, -1 for any other value
+     */
+    private static int elements(Object value) {
+        if (value instanceof Collection)
+            return ((Collection<?>) value).size();
+        // byte and char arrays are written as strings
+        if (value != null && value.getClass().isArray() && !(value instanceof byte[]) && !(value instanceof char[]))
+            return Array.getLength(value);
+        return -1;
+    }
+
+    /**
+     * Write the elements within the budget followed by the marker
+     */
+    private void truncate(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        int max = budget.maxElements();
+        gen.writeStartArray(value, max + 1);
+        if (value instanceof Collection) {
+            Iterator<?> it = ((Collection<?>) value).iterator();
+            for (int i = 0; i < max && it.hasNext(); i++)
+                provider.defaultSerializeValue(it.next(), gen);
+        } else {
+            for (int i = 0; i < max; i++)
+                provider.defaultSerializeValue(Array.get(value, i), gen);
+        }
+        gen.writeString(budget.marker());
+        gen.writeEndArray();
+    }
+
+    /**
+     * Wraps every value serializer, keys are left alone
+     */
+    private static class Modifier extends BeanSerializerModifier {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public JsonSerializer<?> modifySerializer(SerializationConfig config
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyArraySerializer(SerializationConfig config
+                , ArrayType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyCollectionSerializer(SerializationConfig config
+                , CollectionType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyCollectionLikeSerializer(SerializationConfig config
+                , CollectionLikeType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyMapSerializer(SerializationConfig config
+                , MapType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyMapLikeSerializer(SerializationConfig config
+                , MapLikeType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+
+        @Override
+        public JsonSerializer<?> modifyEnumSerializer(SerializationConfig config
+                , JavaType valueType
+                , BeanDescription beanDesc
+                , JsonSerializer<?> serializer) {
+            return Budgeted.wrap(serializer);
+        }
+    }
+
+    /**
+     * A serializer which consults the walk of the current call, if any, before delegating
+     */
+    private static class Budgeted extends JsonSerializer<Object> implements ContextualSerializer, ResolvableSerializer {
+        @SuppressWarnings("unchecked")
+        static JsonSerializer<?> wrap(JsonSerializer<?> serializer) {
+            return serializer == null || serializer instanceof Budgeted
+                    ? serializer
+                    : new Budgeted((JsonSerializer<Object>) serializer);
+        }
+
+        private final JsonSerializer<Object> delegate;
+
+        private Budgeted(JsonSerializer<Object> delegate) {
+            this.delegate = delegate;
+        }
+
+        private JsonSerializer<?> rewrap(JsonSerializer<?> serializer) {
+            return serializer == delegate ? this : wrap(serializer);
+        }
+
+        @Override
+        public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            Traversal traversal = (Traversal) provider.getAttribute(Traversal.class);
+            if (traversal == null)
+                delegate.serialize(value, gen, provider);
+            else
+                traversal.serialize(value, gen, provider, delegate, null);
+        }
+
+        @Override
+        public void serializeWithType(Object value
+                , JsonGenerator gen
+                , SerializerProvider provider
+                , TypeSerializer typeSerializer) throws IOException {
+            Traversal traversal = (Traversal) provider.getAttribute(Traversal.class);
+            if (traversal == null)
+                delegate.serializeWithType(value, gen, provider, typeSerializer);
+            else
+                traversal.serialize(value, gen, provider, delegate, typeSerializer);
+        }
+
+        @Override
+        public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property)
+                throws JsonMappingException {
+            return delegate instanceof ContextualSerializer
+                    ? rewrap(((ContextualSerializer) delegate).createContextual(provider, property))
+                    : this;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer)
+                ((ResolvableSerializer) delegate).resolve(provider);
+        }
+
+        @Override
+        public JsonSerializer<Object> unwrappingSerializer(NameTransformer unwrapper) {
+            JsonSerializer<Object> unwrapping = delegate.unwrappingSerializer(unwrapper);
+            return unwrapping == delegate ? this : new Budgeted(unwrapping);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public JsonSerializer<Object> replaceDelegatee(JsonSerializer<?> delegatee) {
+            return (JsonSerializer<Object>) wrap(delegatee);
+        }
+
+        @Override
+        public JsonSerializer<?> withFilterId(Object filterId) {
+            return rewrap(delegate.withFilterId(filterId));
+        }
+
+        @Override
+        public boolean isEmpty(SerializerProvider provider, Object value) {
+            return delegate.isEmpty(provider, value);
+        }
+
+        @Override
+        public boolean usesObjectId() {
+            return delegate.usesObjectId();
+        }
+
+        @Override
+        public boolean isUnwrappingSerializer() {
+            return delegate.isUnwrappingSerializer();
+        }
+
+        @Override
+        public Class<Object> handledType() {
+            return delegate.handledType();
+        }
+
+        @Override
+        public JsonSerializer<?> getDelegatee() {
+            return delegate;
+        }
+
+        @Override
+        public Iterator<PropertyWriter> properties() {
+            return delegate.properties();
+        }
+
+        @Override
+        public void acceptJsonFormatVisitor(JsonFormatVisitorWrapper visitor, JavaType type)
+                throws JsonMappingException {
+            delegate.acceptJsonFormatVisitor(visitor, type);
+        }
+    }
+}
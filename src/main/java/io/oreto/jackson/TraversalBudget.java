@@ -0,0 +1,122 @@
+package io.oreto.jackson;
+
+/**
+ * Budgets on the object graph a Jackson5 walks when it converts an object to a tree for the Fields DSL,
+ * which is the whole reachable graph when there is nothing to include.
+ * The walk stops where a budget runs out, so ORM entities and bidirectional models cannot produce huge trees
+ * or recurse without end. Depending on the {@link Policy} the cut is marked in the tree or fails the render
+ * with {@link TraversalBudgetExceeded}.
+ * <pre>
+ *     jackson5.budget(TraversalBudget.defaults().maxDepth(8).policy(TraversalBudget.Policy.THROW));
+ * </pre>
+ */
+public class TraversalBudget {
+    /**
+     * What happens where a budget runs out
+     */
+    public enum Policy {
+        /**
+         * Replace the value with the marker. An array which is cut ends with a single marker.
+         */
+        MARK,
+        /**
+         * Fail the render with {@link TraversalBudgetExceeded}
+         */
+        THROW
+    }
+
+    /**
+     * The default marker of a value which was cut
+     */
+    public static final String MARKER = "...";
+
+    /**
+     * @return Generous budgets, which only stop runaway graphs
+     */
+    public static TraversalBudget defaults() {
+        return new TraversalBudget()
+                .maxDepth(64)
+                .maxElements(100_000)
+                .maxNodes(10_000_000);
+    }
+
+    /**
+     * @return No budgets at all, only useful to start from and set some of them
+     */
+    public static TraversalBudget none() {
+        return new TraversalBudget();
+    }
+
+    private int maxDepth = Integer.MAX_VALUE;
+    private int maxElements = Integer.MAX_VALUE;
+    private long maxNodes = Long.MAX_VALUE;
+    private Policy policy = Policy.MARK;
+    private String marker = MARKER;
+
+    private TraversalBudget() {}
+
+    /**
+     * @param maxDepth Maximum nesting of values, the root value is at depth 1
+     * @return This TraversalBudget
+     */
+    public TraversalBudget maxDepth(int maxDepth) {
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * @param maxElements Maximum number of elements of each collection or array
+     * @return This TraversalBudget
+     */
+    public TraversalBudget maxElements(int maxElements) {
+        this.maxElements = maxElements;
+        return this;
+    }
+
+    /**
+     * @param maxNodes Maximum number of values in the whole tree
+     * @return This TraversalBudget
+     */
+    public TraversalBudget maxNodes(long maxNodes) {
+        this.maxNodes = maxNodes;
+        return this;
+    }
+
+    /**
+     * @param policy What happens where a budget runs out, defaults to {@link Policy#MARK}
+     * @return This TraversalBudget
+     */
+    public TraversalBudget policy(Policy policy) {
+        this.policy = policy;
+        return this;
+    }
+
+    /**
+     * @param marker The string which replaces a value that was cut, defaults to {@link #MARKER}
+     * @return This TraversalBudget
+     */
+    public TraversalBudget marker(String marker) {
+        this.marker = marker;
+        return this;
+    }
+
+    int maxDepth() {
+        return maxDepth;
+    }
+
+    int maxElements() {
+        return maxElements;
+    }
+
+    long maxNodes() {
+        return maxNodes;
+    }
+
+    Policy policy() {
+        return policy;
+    }
+
+    String marker() {
+        return marker;
+    }
+}
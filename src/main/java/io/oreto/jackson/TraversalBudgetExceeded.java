@@ -0,0 +1,40 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+/**
+ * Thrown when a Jackson5 with the {@link TraversalBudget.Policy#THROW} policy runs out of a {@link TraversalBudget}
+ */
+public class TraversalBudgetExceeded extends JsonProcessingException {
+    private final String budget;
+    private final long value;
+    private final long max;
+
+    public TraversalBudgetExceeded(String budget, long value, long max) {
+        super(String.format("traversal %s of %d exceeds the budget of %d", budget, value, max));
+        this.budget = budget;
+        this.value = value;
+        this.max = max;
+    }
+
+    /**
+     * @return The name of the exceeded budget: depth, elements or nodes
+     */
+    public String getBudget() {
+        return budget;
+    }
+
+    /**
+     * @return The value at which the walk stopped
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * @return The configured budget
+     */
+    public long getMax() {
+        return max;
+    }
+}
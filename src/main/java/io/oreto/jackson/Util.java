@@ -1,6 +1,8 @@
 package io.oreto.jackson;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
@@ -52,6 +54,32 @@ class Util {
             } catch (NumberFormatException ignored) { }
             return Optional.empty();
         }
+
+        /**
+         * Count the bytes of a String encoded as UTF-8, without encoding it
+         * @param s The characters to measure
+         * @return The number of UTF-8 bytes
+         */
+        static long utf8Length(CharSequence s) {
+            return utf8Length(s, 0, s.length());
+        }
+
+        static long utf8Length(CharSequence s, int start, int end) {
+            long bytes = 0;
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80)
+                    bytes++;
+                else if (c < 0x800)
+                    bytes += 2;
+                else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    bytes += 4;
+                    i++;
+                } else
+                    bytes += 3;
+            }
+            return bytes;
+        }
     }
 
     static class IO {
@@ -75,6 +103,86 @@ class Util {
             return resourceText(IO.class.getClassLoader(), path, resourcePath);
         }
 
+        /**
+         * Read the remaining bytes of a buffer, such as a memory mapped file region, as an InputStream
+         * @param buffer The buffer to read
+         * @return InputStream over the buffer
+         */
+        static InputStream inputStream(ByteBuffer buffer) {
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!buffer.hasRemaining())
+                        return -1;
+                    len = Math.min(len, buffer.remaining());
+                    buffer.get(b, off, len);
+                    return len;
+                }
+
+                @Override
+                public int available() {
+                    return buffer.remaining();
+                }
+            };
+        }
+
+        /**
+         * OutputStream which counts the bytes written through it
+         */
+        static class CountingOutputStream extends FilterOutputStream {
+            long count;
+
+            CountingOutputStream(OutputStream out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                count++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                count += len;
+            }
+        }
+
+        /**
+         * Writer which counts the UTF-8 bytes of the characters written through it
+         */
+        static class CountingWriter extends FilterWriter {
+            long count;
+
+            CountingWriter(Writer out) {
+                super(out);
+            }
+
+            @Override
+            public void write(int c) throws IOException {
+                out.write(c);
+                count += Str.utf8Length(String.valueOf((char) c));
+            }
+
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                out.write(cbuf, off, len);
+                count += Str.utf8Length(CharBuffer.wrap(cbuf), off, off + len);
+            }
+
+            @Override
+            public void write(String str, int off, int len) throws IOException {
+                out.write(str, off, len);
+                count += Str.utf8Length(str, off, off + len);
+            }
+        }
+
         static Optional<InputStream> loadResource(ClassLoader classLoader, String path, String... resourcePath) {
             InputStream stream = classLoader.getResourceAsStream(Paths.get(path, resourcePath).toString());
             return stream == null ? Optional.empty() : Optional.of(stream);
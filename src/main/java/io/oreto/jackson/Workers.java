@@ -0,0 +1,39 @@
+package io.oreto.jackson;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory for the worker pools used by the parallel readers and writers
+ */
+final class Workers {
+    private Workers() {}
+
+    /**
+     * Create a pool of daemon worker threads
+     * @param name Prefix of the thread names
+     * @param threads Number of threads in the pool
+     * @return The new ExecutorService, which the caller must shut down
+     */
+    static ExecutorService pool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, factory(name));
+    }
+
+    /**
+     * @return The number of worker threads to use when none is specified
+     */
+    static int parallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    private static ThreadFactory factory(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,288 @@
+package io.oreto.jackson;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.function.LongPredicate;
+
+/**
+ * Byte level scanner which finds where CSV records start without parsing the fields.
+ * Newlines inside quoted values do not start a record, and comment lines (starting with #) and blank lines
+ * are skipped. A value is quoted only when a quote opens the field, so a quote inside an unquoted value
+ * such as 5'10" is just a character, and a quoted value ends at a quote which is not doubled.
+ * The quote, comma, newline and comment characters are ASCII, so scanning UTF-8 bytes is safe.
+ * Between records the bytes are read eight at a time, and words which hold none of the characters
+ * that matter in the current state are skipped whole.
+ */
+final class CsvScanner {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final byte SEPARATOR = ',';
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+    private static final long QUOTES = ONES * '"';
+    private static final long NEWLINES = ONES * '\n';
+
+    // the states between two bytes
+    static final int RECORD = 0;  // at the start of a record, where blank lines are skipped
+    static final int FIELD = 1;   // at the start of a field after a comma
+    static final int VALUE = 2;   // inside an unquoted value
+    static final int QUOTED = 3;  // inside a quoted value
+    static final int QUOTE = 4;   // after a quote inside a quoted value, which closes it unless another quote follows
+    static final int COMMENT = 5; // inside a comment line
+    private static final int STATES = 6;
+
+    private int state;
+
+    CsvScanner() {
+        this(RECORD);
+    }
+
+    private CsvScanner(int state) {
+        this.state = state;
+    }
+
+    /**
+     * Scan the channel from position to end, reporting the offset of every record start
+     * @param channel The file channel to scan
+     * @param position Offset to start scanning from, which must be the start of a record
+     * @param end Offset to stop scanning at
+     * @param records Called with each record start offset, return false to stop scanning
+     * @throws IOException If the channel cannot be read
+     */
+    static void scan(FileChannel channel, long position, long end, LongPredicate records) throws IOException {
+        new CsvScanner().scan(channel, position, end, records, ByteBuffer.allocate(BUFFER_SIZE));
+    }
+
+    /**
+     * Scan a part of a file which may start anywhere, even inside a quoted value, for every state it could start in.
+     * The scans of the states that reach the same state are merged, which usually happens at the first newline,
+     * so at most a quoted and an unquoted reading of the part are carried to its end.
+     * @param channel The file channel to scan
+     * @param position Offset of the part
+     * @param end Offset after the part
+     * @return The first record and the end state of the part for each start state
+     * @throws IOException If the channel cannot be read
+     */
+    static Part part(FileChannel channel, long position, long end) throws IOException {
+        CsvScanner[] scanners = new CsvScanner[STATES];
+        long[] first = new long[STATES];
+        Arrays.fill(first, -1);
+        for (int state = 0; state < STATES; state++)
+            scanners[state] = new CsvScanner(state);
+
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        byte[] bytes = buffer.array();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                break;
+            for (int state = 0; state < STATES; state++) {
+                CsvScanner scanner = scanners[state];
+                // scan once for all the start states which share the scanner
+                if (indexOf(scanners, scanner) < state)
+                    continue;
+                scanner.scan(bytes, 0, read, position, offset -> {
+                    for (int i = 0; i < STATES; i++) {
+                        if (scanners[i] == scanner && first[i] < 0)
+                            first[i] = offset;
+                    }
+                    return true;
+                });
+            }
+            // scanners in the same state read the rest of the part the same way
+            for (int state = 0; state < STATES; state++) {
+                for (int other = 0; other < state; other++) {
+                    if (scanners[other].state == scanners[state].state) {
+                        scanners[state] = scanners[other];
+                        break;
+                    }
+                }
+            }
+            position += read;
+        }
+        int[] ends = new int[STATES];
+        for (int state = 0; state < STATES; state++)
+            ends[state] = scanners[state].state;
+        return new Part(first, ends);
+    }
+
+    private static int indexOf(CsvScanner[] scanners, CsvScanner scanner) {
+        int i = 0;
+        while (scanners[i] != scanner)
+            i++;
+        return i;
+    }
+
+    private void scan(FileChannel channel
+            , long position
+            , long end
+            , LongPredicate records
+            , ByteBuffer buffer) throws IOException {
+        byte[] bytes = buffer.array();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, end - position));
+            int read = channel.read(buffer, position);
+            if (read < 0)
+                break;
+            if (!scan(bytes, 0, read, position, records))
+                break;
+            position += read;
+        }
+    }
+
+    /**
+     * Scan the remaining bytes of a buffer, such as a memory mapped window of a file.
+     * Successive windows can be scanned with the same scanner, which carries the state over.
+     * @param buffer The bytes to scan
+     * @param offset File offset of the byte at index 0 of the buffer
+     * @param records Called with each record start offset, return false to stop scanning
+     * @return false if scanning was stopped, true otherwise
+     */
+    boolean scan(ByteBuffer buffer, long offset, LongPredicate records) {
+        byte[] bytes = new byte[Math.min(BUFFER_SIZE, buffer.remaining())];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(bytes.length, buffer.remaining());
+            long position = offset + buffer.position();
+            buffer.get(bytes, 0, length);
+            if (!scan(bytes, 0, length, position, records))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Scan a block of bytes, carrying the quote and comment state over from the previous block
+     * @param bytes The bytes to scan
+     * @param from Index of the first byte
+     * @param to Index after the last byte
+     * @param offset File offset of the byte at index 0
+     * @param records Called with each record start offset, return false to stop scanning
+     * @return false if scanning was stopped, true otherwise
+     */
+    boolean scan(byte[] bytes, int from, int to, long offset, LongPredicate records) {
+        for (int i = from; i < to; i++) {
+            if (state == VALUE || state == QUOTED || state == COMMENT) {
+                // comments end at a newline, quoted values at a quote, unquoted values at a newline,
+                // and at a quote only if it opens a field after a comma
+                int start = i;
+                i = state == COMMENT ? skip(bytes, i, to, NEWLINES, NEWLINES)
+                        : state == QUOTED ? skip(bytes, i, to, QUOTES, QUOTES)
+                        : skip(bytes, i, to, QUOTES, NEWLINES);
+                if (state == VALUE && i > start && bytes[i - 1] == SEPARATOR)
+                    state = FIELD;
+                if (i == to)
+                    break;
+            }
+            byte b = bytes[i];
+            switch (state) {
+                case RECORD:
+                    if (b == '\n' || b == '\r')
+                        break;
+                    if (b == '#') {
+                        state = COMMENT;
+                        break;
+                    }
+                    state = field(b);
+                    if (!records.test(offset + i))
+                        return false;
+                    break;
+                case FIELD:
+                    state = field(b);
+                    break;
+                case VALUE:
+                    state = value(b);
+                    break;
+                case QUOTED:
+                    if (b == '"')
+                        state = QUOTE;
+                    break;
+                case QUOTE:
+                    // a doubled quote is a quote in the value
+                    state = b == '"' ? QUOTED : value(b);
+                    break;
+                default:
+                    if (b == '\n')
+                        state = RECORD;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The state after the first byte of a field
+     */
+    private static int field(byte b) {
+        return b == '"' ? QUOTED : value(b);
+    }
+
+    /**
+     * @return The state after a byte of an unquoted value
+     */
+    private static int value(byte b) {
+        return b == SEPARATOR ? FIELD : b == '\n' ? RECORD : VALUE;
+    }
+
+    /**
+     * Skip the whole words which hold neither of two bytes
+     * @param bytes The bytes to scan
+     * @param i Index to start from
+     * @param to Index after the last byte
+     * @param a The first byte repeated in every lane of a word
+     * @param b The second byte repeated in every lane of a word
+     * @return The index of the first a or b, or of the first byte of the tail shorter than a word
+     */
+    private static int skip(byte[] bytes, int i, int to, long a, long b) {
+        for (; i <= to - Long.BYTES; i += Long.BYTES) {
+            long word = (long) LONGS.get(bytes, i);
+            long found = zeros(word ^ a) | zeros(word ^ b);
+            if (found != 0)
+                // the lowest flagged lane is always a true match
+                return i + (Long.numberOfTrailingZeros(found) >>> 3);
+        }
+        return i;
+    }
+
+    /**
+     * @return A word with the high bit of each zero byte set, and maybe of some bytes above the lowest zero byte
+     */
+    private static long zeros(long word) {
+        return (word - ONES) & ~word & HIGHS;
+    }
+
+    /**
+     * Where the records of a part of a file start, depending on the state the part starts in
+     */
+    static final class Part {
+        private final long[] first;
+        private final int[] end;
+
+        private Part(long[] first, int[] end) {
+            this.first = first;
+            this.end = end;
+        }
+
+        /**
+         * @param state The state at the start of the part
+         * @return The offset of the first record which starts in the part, or -1 if none does
+         */
+        long first(int state) {
+            return first[state];
+        }
+
+        /**
+         * @param state The state at the start of the part
+         * @return The state at the end of the part, which the next part starts in
+         */
+        int end(int state) {
+            return end[state];
+        }
+    }
+}
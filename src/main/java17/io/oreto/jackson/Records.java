@@ -0,0 +1,18 @@
+package io.oreto.jackson;
+
+/**
+ * Tells records apart from other classes, so their selected properties can be serialized alone.
+ * The components of a record are plain final fields behind side effect free accessors,
+ * so leaving the unselected ones out changes nothing but the work done.
+ */
+final class Records {
+    private Records() {}
+
+    /**
+     * @param type The class of a value
+     * @return true if the class is a record
+     */
+    static boolean isRecord(Class<?> type) {
+        return type.isRecord();
+    }
+}
@@ -0,0 +1,30 @@
+package io.oreto.jackson;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Factory for the worker pools used by the parallel readers and writers.
+ * The workers are virtual threads, which cost next to nothing to start, so a pool made for a single call
+ * no longer pays for platform threads. Pools stay fixed to bound how many tasks run at once.
+ */
+final class Workers {
+    private Workers() {}
+
+    /**
+     * Create a pool of virtual worker threads
+     * @param name Prefix of the thread names
+     * @param threads Number of threads in the pool
+     * @return The new ExecutorService, which the caller must shut down
+     */
+    static ExecutorService pool(String name, int threads) {
+        return Executors.newFixedThreadPool(threads, Thread.ofVirtual().name(name + "-", 1).factory());
+    }
+
+    /**
+     * @return The number of worker threads to use when none is specified
+     */
+    static int parallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
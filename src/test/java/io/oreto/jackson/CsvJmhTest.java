@@ -0,0 +1,195 @@
+package io.oreto.jackson;
+
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+@State(Scope.Benchmark)
+public class CsvJmhTest {
+    public static void main(String[] args) throws RunnerException, IOException {
+        footprint(200000);
+        Options options = new OptionsBuilder()
+                .include(CsvJmhTest.class.getName() + ".*")
+                .mode(Mode.AverageTime)
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .addProfiler("gc")
+                .build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * Print the heap retained by the map rows versus the columnar table of the same file
+     */
+    static void footprint(int rows) throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, rows);
+            long before = used();
+            Object maps = Csv.from(path.toFile());
+            long mapBytes = used() - before;
+            maps = null;
+            before = used();
+            CsvTable table = Csv.table(path);
+            long tableBytes = used() - before;
+            System.out.printf("%d rows retained: maps %d KB, table %d KB (%d rows)%n"
+                    , rows, mapBytes / 1024, tableBytes / 1024, table.rows());
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    private static long used() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @Param({ "200000" })
+    public int rows;
+
+    Path path;
+    Path gzip;
+    List<Map<String, ?>> maps;
+
+    @Setup
+    public void setup() throws IOException {
+        path = Files.createTempFile("biostats", ".csv");
+        TestUtils.biostats(path, rows);
+        maps = Csv.from(path.toFile());
+        gzip = Files.createTempFile("biostats", ".csv.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            Files.copy(path, out);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(path);
+        Files.deleteIfExists(gzip);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void from(Blackhole blackhole) {
+        blackhole.consume(Csv.from(path.toFile()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fromProjected(Blackhole blackhole) {
+        blackhole.consume(Csv.from(path.toFile(), Csv.Options.header().include("Name", "Age")));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamGzip(Blackhole blackhole) throws IOException {
+        try (Stream<Map> rows = Csv.stream(new GZIPInputStream(Files.newInputStream(gzip), 64 * 1024), Map.class)) {
+            rows.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void streamPipelinedGzip(Blackhole blackhole) {
+        try (Stream<Map> rows = Csv.stream(gzip, Map.class)) {
+            rows.forEach(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeGzip(Blackhole blackhole) throws IOException {
+        try (OutputStream out = new GZIPOutputStream(new BlackholeOutputStream(blackhole), 64 * 1024)) {
+            Csv.of(maps).write(out);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void writeParallelGzip(Blackhole blackhole) throws IOException {
+        try (OutputStream out = new ParallelGzipOutputStream(new BlackholeOutputStream(blackhole))) {
+            Csv.of(maps).write(out);
+        }
+    }
+
+    static class BlackholeOutputStream extends OutputStream {
+        private final Blackhole blackhole;
+
+        BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void fromThenSerialize(Blackhole blackhole) throws IOException {
+        Jackson5.get().write(new BlackholeOutputStream(blackhole), Csv.from(path.toFile()));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void toJson(Blackhole blackhole) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            Csv.toJson(in, new BlackholeOutputStream(blackhole), Csv.Options.header());
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void table(Blackhole blackhole) throws IOException {
+        blackhole.consume(Csv.table(path));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void tableOffHeap(Blackhole blackhole) throws IOException {
+        blackhole.consume(CsvTable.loader().offHeap().load(path));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parallel(Blackhole blackhole) throws IOException {
+        blackhole.consume(Csv.parallel(path, Map.class));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void parallelUnordered(Blackhole blackhole) throws IOException {
+        Csv.parallel(path, Map.class, Csv.Options.header(), Workers.parallelism(), blackhole::consume);
+    }
+}
@@ -0,0 +1,69 @@
+package io.oreto.jackson;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bytes per second of finding the record starts of a CSV file, which the Java 17 classes do a word at a time.
+ * Run on JDK 17 or later, once against the classes directory for the baseline and once against the
+ * multi-release jar: {@code mvn -Pbench test -Dbench.include=CsvScannerJmhTest -Dmrjar.jdk=/path/to/jdk-21 [-Dbench.classes=target/classes]}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class CsvScannerJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(CsvScannerJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    /**
+     * plain: short unquoted fields, quoted: long quoted text with commas and newlines
+     */
+    @Param({ "plain", "quoted" })
+    public String shape;
+
+    byte[] bytes;
+    long records;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder("id,name,weight,height,note\n");
+        while (sb.length() < 1 << 20) {
+            sb.append(random.nextInt(100000)).append(",name").append(random.nextInt(1000))
+                    .append(',').append(random.nextInt(300)).append(',').append(random.nextInt(80)).append(',');
+            if (shape.equals("quoted"))
+                sb.append("\"a note, which spans\nlines and has \"\"quotes\"\" in it ").append(random.nextInt()).append('"');
+            else
+                sb.append(random.nextInt(10));
+            sb.append('\n');
+        }
+        bytes = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(1 << 20)
+    public long scan() {
+        records = 0;
+        new CsvScanner().scan(bytes, 0, bytes.length, 0, offset -> ++records > 0);
+        return records;
+    }
+}
@@ -2,18 +2,34 @@ package io.oreto.jackson;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import io.oreto.jackson.util.TestUtils;
 import org.junit.jupiter.api.Test;
 
 import javax.naming.NameNotFoundException;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 import static io.oreto.jackson.Util.IO;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class CsvTest {
 
@@ -27,6 +43,381 @@ public class CsvTest {
                 .findFirst().orElseThrow(NameNotFoundException::new).get("Age"));
     }
 
+    @Test
+    public void stream() throws IOException {
+        try (InputStream inputStream = IO.loadResource(getClass().getClassLoader(), "biostats.csv")
+                .orElseThrow(FileNotFoundException::new);
+             Stream<Biostat> stats = Csv.stream(inputStream, Biostat.class)) {
+            Biostat omar = stats.filter(it -> it.name.equals("Omar")).findFirst().orElseThrow(AssertionError::new);
+            assertEquals(38, omar.age);
+            assertEquals(70, omar.height);
+            assertEquals(145.0, omar.weight);
+        }
+    }
+
+    @Test
+    public void streamNoHeader() {
+        try (Stream<Person> people = Csv.stream(new StringReader("ross,\"Nashville, TN\"\nBrandon,Dickerson\n")
+                , Person.class
+                , Csv.Options.noHeader())) {
+            assertEquals(Lists.of("Nashville, TN", "Dickerson"), people.map(it -> it.address).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void streamMapNoHeader() {
+        try (Stream<Map> rows = Csv.stream(new StringReader("1,name1\n2,name2\n"), Map.class, Csv.Options.noHeader())) {
+            assertEquals(Lists.of("{0=1, 1=name1}", "{0=2, 1=name2}")
+                    , rows.map(Object::toString).collect(Collectors.toList()));
+        }
+        try (Stream<Map> rows = Csv.stream(new StringReader("1,name1\n2,name2\n"), Map.class, Csv.Options.noHeader()
+                .schema(CsvSchema.builder().addColumn("id").addColumn("name").build()))) {
+            assertEquals(Lists.of("{id=1, name=name1}", "{id=2, name=name2}")
+                    , rows.map(Object::toString).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void parallel() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 5000);
+            List<Biostat> expected;
+            try (Stream<Biostat> stats = Csv.stream(path, Biostat.class)) {
+                expected = stats.collect(Collectors.toList());
+            }
+            List<Biostat> ordered = Csv.parallel(path, Biostat.class, Csv.Options.header(), 4);
+            assertEquals(expected.stream().map(it -> it.name).collect(Collectors.toList())
+                    , ordered.stream().map(it -> it.name).collect(Collectors.toList()));
+
+            Set<String> names = ConcurrentHashMap.newKeySet();
+            Csv.parallel(path, Biostat.class, Csv.Options.header(), 4, (Biostat it) -> names.add(it.name));
+            assertEquals(expected.stream().map(it -> it.name).collect(Collectors.toSet()), names);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void parallelQuotes() throws IOException {
+        Path path = Files.createTempFile("quotes", ".csv");
+        try {
+            // a quote inside an unquoted value does not open a quoted value, and quoted values span lines
+            Files.write(path, IntStream.range(-1, 20000).mapToObj(i -> i < 0 ? "id,height,note"
+                    : i % 7 == 0 ? i + ",5'10\",\"line one\nline \"\"two\"\"\n" + TestUtils.randomString(200) + "\""
+                    : i + ",5'10\",plain").collect(Collectors.toList()), StandardCharsets.UTF_8);
+            List<Map<String, ?>> expected = Csv.from(path.toFile());
+            assertEquals(20000, expected.size());
+            List<Map> rows = Csv.parallel(path, Map.class, Csv.Options.header(), 4);
+            assertEquals(expected, rows);
+            assertEquals("5'10\"", rows.get(14).get("height"));
+            assertEquals("line one\nline \"two\"", rows.get(14).get("note").toString().substring(0, 19));
+
+            CsvIndex index = Csv.index(path);
+            assertEquals(20000, index.size());
+            assertEquals(expected.subList(19990, 20000), index.rows("[-10:]", Map.class));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void parallelMapNoHeader() throws IOException {
+        Path path = Files.createTempFile("rows", ".csv");
+        try {
+            Files.write(path, IntStream.range(0, 40).mapToObj(i -> i + ",name" + i).collect(Collectors.toList())
+                    , StandardCharsets.UTF_8);
+            List<Map> rows = Csv.parallel(path, Map.class, Csv.Options.noHeader(), 4);
+            assertEquals(40, rows.size());
+            assertEquals("{0=0, 1=name0}", rows.get(0).toString());
+            assertEquals("{0=39, 1=name39}", rows.get(39).toString());
+            rows = Csv.parallel(path, Map.class, Csv.Options.noHeader()
+                    .schema(CsvSchema.builder().addColumn("id").addColumn("name").build()), 4);
+            assertEquals("{id=37, name=name37}", rows.get(37).toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void writeListGzip() throws IOException {
+        List<List<String>> rows = IntStream.range(0, 10000)
+                .mapToObj(i -> Lists.of("row" + i, "Nashville, TN", String.valueOf(i % 7)))
+                .collect(Collectors.toList());
+        String csv = Csv.toCsv(rows);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bytes, 64 * 1024, 4)) {
+            Csv.of(rows).write(out);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(csv, new String(TestUtils.readAll(in), StandardCharsets.UTF_8));
+        }
+        // a flush per row would write a gzip member per row, bigger than the csv itself
+        assertTrue(bytes.size() < csv.length() / 4, "compressed to " + bytes.size() + " bytes");
+    }
+
+    @Test
+    public void writeGzip() throws IOException {
+        List<Person> people = IntStream.range(0, 2000)
+                .mapToObj(i -> new Person(TestUtils.randomString(10).toString(), "Nashville, TN " + i))
+                .collect(Collectors.toList());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bytes, 4096, 3)) {
+            Csv.of(people).write(out);
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(Csv.of(people).writeString(), new String(TestUtils.readAll(in), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void readGzip() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        Path gzip = Files.createTempFile("biostats", ".csv.gz");
+        try {
+            TestUtils.biostats(path, 3000);
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+                Files.copy(path, out);
+            }
+            assertEquals(Csv.from(path.toFile()), Csv.from(gzip.toFile()));
+            assertEquals(Csv.from(path.toFile(), Csv.Options.header().include("Name"))
+                    , Csv.from(gzip.toFile(), Csv.Options.header().include("Name")));
+            try (Stream<Biostat> plain = Csv.stream(path, Biostat.class);
+                 Stream<Biostat> compressed = Csv.stream(gzip, Biostat.class)) {
+                assertEquals(plain.map(it -> it.name).collect(Collectors.toList())
+                        , compressed.map(it -> it.name).collect(Collectors.toList()));
+            }
+        } finally {
+            Files.delete(path);
+            Files.delete(gzip);
+        }
+    }
+
+    @Test
+    public void projection() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 500);
+            // excluding nothing must read exactly what the jackson reader reads
+            assertEquals(Csv.from(path.toFile()), Csv.from(path.toFile(), Csv.Options.header().exclude("none")));
+
+            List<Map<String, ?>> rows = Csv.from(path.toFile(), Csv.Options.header().include("Name", "Age"));
+            assertEquals(500, rows.size());
+            assertEquals(Lists.of("Name", "Age"), new ArrayList<>(rows.get(0).keySet()));
+            // a csv which cannot be read fails instead of returning null
+            assertThrows(UncheckedIOException.class
+                    , () -> Csv.from(path.getParent().toFile(), Csv.Options.header().include("Name")));
+            assertThrows(UncheckedIOException.class, () -> Csv.from(path.getParent().toFile()));
+
+            try (Stream<Biostat> stats = Csv.stream(path, Biostat.class, Csv.Options.header().include("Name", "Age"))) {
+                Biostat first = stats.findFirst().orElseThrow(AssertionError::new);
+                assertEquals(rows.get(0).get("Name"), first.name);
+                assertEquals(rows.get(0).get("Age"), String.valueOf(first.age));
+                assertEquals(0, first.height);
+            }
+
+            CsvTable table = CsvTable.loader().load(path, Csv.Options.header().exclude("Sex", "Name"));
+            assertEquals(3, table.columns().size());
+            assertEquals(500, table.rows());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void projectionFields() {
+        String csv = "name,child.name,child.address\n" +
+                "ross,,\n" +
+                "brandon,\"Brandon, Jr\",Dickerson\n";
+        assertEquals(Lists.of(Lists.of("ross", ""), Lists.of("brandon", "Brandon, Jr"))
+                , Csv.from(csv, Csv.Options.header().fields(Fields.Include("name child{ name }"))).stream()
+                        .map(it -> new ArrayList<>(it.values())).collect(Collectors.toList()));
+        assertEquals(Lists.of("name")
+                , new ArrayList<>(Csv.from(csv, Csv.Options.header().fields(Fields.Exclude("child"))).get(1).keySet()));
+    }
+
+    @Test
+    public void transcode() throws IOException {
+        String csv = "name,child.name,child.address\n" +
+                "ross,,\n" +
+                "brandon,\"Brandon, Jr\",Dickerson\n";
+        StringWriter json = new StringWriter();
+        Csv.toJson(new StringReader(csv), json, Csv.Options.header());
+        assertEquals("[{\"name\":\"ross\",\"child\":{\"name\":\"\",\"address\":\"\"}}" +
+                ",{\"name\":\"brandon\",\"child\":{\"name\":\"Brandon, Jr\",\"address\":\"Dickerson\"}}]"
+                , json.toString());
+
+        json = new StringWriter();
+        Csv.toJson(new StringReader(csv), json, Csv.Options.header().fields(Fields.Exclude("child{ address }")));
+        assertEquals("[{\"name\":\"ross\",\"child\":{\"name\":\"\"}}" +
+                ",{\"name\":\"brandon\",\"child\":{\"name\":\"Brandon, Jr\"}}]", json.toString());
+
+        List<Person2> elements = new ArrayList<>();
+        elements.add(new Person2("brandon", "Dickerson").withChild(new Person("Brandon", "Dickerson")));
+        elements.add(new Person2("ross", "Nashville, TN"));
+        StringWriter writer = new StringWriter();
+        Csv.fromJson(new StringReader(Jackson5.get().serialize(elements)), writer, Csv.Options.header());
+        assertEquals(Csv.of(elements).writeString(), writer.toString());
+
+        // the first element and the ones after it read values the same way
+        writer = new StringWriter();
+        Csv.fromJson(new StringReader("[{\"a\":1.50,\"b\":[1,true],\"c\":{\"d\":null}},{\"a\":1.50,\"b\":[1,true],\"c\":{\"d\":2}}]")
+                , writer, Csv.Options.header());
+        assertEquals("a,b,d\n1.50,1;true,\n1.50,1;true,2\n", writer.toString());
+    }
+
+    @Test
+    public void transcodeRoundTrip() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 2000);
+            ByteArrayOutputStream json = new ByteArrayOutputStream();
+            try (InputStream in = Files.newInputStream(path)) {
+                Csv.toJson(in, json, Csv.Options.header());
+            }
+            assertEquals(Jackson5.get().serialize(Csv.from(path.toFile())), json.toString("UTF-8"));
+
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+            Csv.fromJson(new ByteArrayInputStream(json.toByteArray()), csv, Csv.Options.header());
+            assertEquals(Csv.from(path.toFile()), Csv.from(csv.toString("UTF-8")));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void table() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 3000);
+            List<Biostat> expected;
+            try (Stream<Biostat> stats = Csv.stream(path, Biostat.class)) {
+                expected = stats.collect(Collectors.toList());
+            }
+            CsvTable table = Csv.table(path);
+            assertEquals(3000, table.rows());
+            assertEquals(CsvTable.Type.STRING, table.column("Name").type());
+            assertEquals(CsvTable.Type.INT, table.column("Age").type());
+            assertEquals(CsvTable.Type.INT, table.column("Weight (lbs)").type());
+            assertEquals(expected.get(2999).name, table.strings("Name").get(2999));
+            assertEquals(expected.stream().mapToInt(it -> it.age).sum(), table.ints("Age").stream().sum());
+            assertEquals(2, table.strings("Sex").cardinality());
+
+            CsvTable offHeap = CsvTable.loader().offHeap()
+                    .type("Age", CsvTable.Type.LONG)
+                    .type("Weight (lbs)", CsvTable.Type.DOUBLE)
+                    .load(path);
+            assertEquals(expected.get(7).age, offHeap.longs("Age").get(7));
+            assertEquals(expected.get(7).weight, offHeap.doubles("Weight (lbs)").get(7));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void tableWidening() throws IOException {
+        CsvTable table = CsvTable.loader().load(new StringReader("a,b\n1,x\n,y\n3000000000,z\n2.5,\n")
+                , Csv.Options.header());
+        assertEquals(CsvTable.Type.DOUBLE, table.column("a").type());
+        assertEquals(3000000000.0, table.doubles("a").get(2));
+        assertEquals(true, table.column("a").isMissing(1));
+        assertEquals(null, table.column("b").text(3));
+        assertEquals("y", table.strings("b").get(1));
+
+        // a column typed by the caller is not widened
+        IOException e = assertThrows(IOException.class, () -> CsvTable.loader().type("a", CsvTable.Type.INT)
+                .load(new StringReader("a,b\n1,x\n,y\n3000000000,z\n"), Csv.Options.header()));
+        assertEquals("row 3: 3000000000 does not fit column a of type INT", e.getMessage());
+    }
+
+    @Test
+    public void tableNumbers() throws IOException {
+        CsvTable table = CsvTable.loader().load(new StringReader(
+                "id,zip,max,min\n1234567890123456789,02134,9223372036854775807,-9223372036854775808\n")
+                , Csv.Options.header());
+        assertEquals(CsvTable.Type.LONG, table.column("id").type());
+        assertEquals(1234567890123456789L, table.longs("id").get(0));
+        assertEquals(CsvTable.Type.STRING, table.column("zip").type());
+        assertEquals("02134", table.strings("zip").get(0));
+        assertEquals(Long.MAX_VALUE, table.longs("max").get(0));
+        assertEquals(Long.MIN_VALUE, table.longs("min").get(0));
+
+        // widened to text past the sample, the numbers keep the text they were written with
+        StringBuilder csv = new StringBuilder("a\n1e3\n");
+        for (int i = 0; i < 1500; i++)
+            csv.append(i).append(".5\n");
+        csv.append("x\n");
+        table = CsvTable.loader().load(new StringReader(csv.toString()), Csv.Options.header());
+        assertEquals(CsvTable.Type.STRING, table.column("a").type());
+        assertEquals("1e3", table.strings("a").get(0));
+        assertEquals("7.5", table.strings("a").get(8));
+    }
+
+    @Test
+    public void index() throws IOException {
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 3000);
+            List<String> names;
+            try (Stream<Biostat> stats = Csv.stream(path, Biostat.class)) {
+                names = stats.map(it -> it.name).collect(Collectors.toList());
+            }
+            CsvIndex index = Csv.index(path).save();
+            assertEquals(3000, index.size());
+            assertEquals(names.subList(1000, 1101), index.rows("[1000:1100]", Biostat.class)
+                    .stream().map(it -> it.name).collect(Collectors.toList()));
+            assertEquals(names.subList(2999, 3000), index.rows("[-1]", Biostat.class)
+                    .stream().map(it -> it.name).collect(Collectors.toList()));
+            assertEquals(names.subList(0, 10), Csv.index(path).rows("[:9]", Biostat.class)
+                    .stream().map(it -> it.name).collect(Collectors.toList()));
+        } finally {
+            Files.deleteIfExists(CsvIndex.indexPath(path));
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void indexNoHeader() throws IOException {
+        Path path = Files.createTempFile("people", ".csv");
+        try {
+            Files.write(path, IntStream.range(0, 40).mapToObj(i -> "p" + i + ",\"Nashville, TN " + i + "\"")
+                    .collect(Collectors.toList()), StandardCharsets.UTF_8);
+            CsvIndex index = Csv.index(path, Csv.Options.noHeader());
+            assertEquals(40, index.size());
+            assertEquals(Lists.of("p0", "p1"), index.rows(0, 2, Person.class)
+                    .stream().map(it -> it.name).collect(Collectors.toList()));
+            List<Map> rows = index.rows("[-2:]", Map.class);
+            assertEquals("{0=p38, 1=Nashville, TN 38}", rows.get(0).toString());
+            assertEquals("{0=p39, 1=Nashville, TN 39}", rows.get(1).toString());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void scan() {
+        String csv = "name,note\n# a comment, with \"quotes\n\nross,\"line one\nline \"\"two\"\"\"\r\n"
+                + "jane,plain text which runs on for longer than a word\n\"\",\"#\"\n#\nlast,\"\"";
+        byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+        List<Long> expected = new ArrayList<>();
+        new CsvScanner().scan(bytes, 0, bytes.length, 0, expected::add);
+        assertEquals(5, expected.size());
+        assertEquals((long) csv.indexOf("ross"), expected.get(1));
+        assertEquals((long) csv.indexOf("\"\",\"#"), expected.get(3));
+        // the state carries over wherever the blocks are split
+        for (int split = 0; split <= bytes.length; split++) {
+            List<Long> starts = new ArrayList<>();
+            CsvScanner scanner = new CsvScanner();
+            scanner.scan(bytes, 0, split, 0, starts::add);
+            scanner.scan(bytes, split, bytes.length, 0, starts::add);
+            assertEquals(expected, starts, "split at " + split);
+        }
+    }
+
     @Test
     public void write() throws IOException {
         List<Map<String, Object>> elements = new ArrayList<>();
@@ -126,16 +517,121 @@ public class CsvTest {
         assertEquals("ross,\"Nashville, TN\",Brandon,Dickerson\n", csv);
     }
 
+    @Test
+    public void writeStream() throws IOException {
+        Iterable<Person> rows = () -> IntStream.range(0, 3)
+                .mapToObj(i -> new Person("p" + i, "Nashville, TN")).iterator();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Csv.of(rows).write(out);
+        assertEquals("name,address\n" +
+                "p0,\"Nashville, TN\"\n" +
+                "p1,\"Nashville, TN\"\n" +
+                "p2,\"Nashville, TN\"\n", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void writeStreamSchema() throws IOException {
+        List<Person2> elements = new ArrayList<>();
+        elements.add(new Person2("ross", "Nashville, TN"));
+        elements.add(new Person2("brandon", "Dickerson")
+                .withChild(new Person("Brandon", "Dickerson")));
+        StringWriter writer = new StringWriter();
+        Csv.of(elements, Csv.Options.header()
+                .schema(CsvSchema.builder().addColumn("name").addColumn("child.name").build()))
+                .write(writer);
+        assertEquals("name,child.name\n" +
+                "ross,\n" +
+                "brandon,Brandon\n", writer.toString());
+    }
+
+    @Test
+    public void writeEmptySchema() throws IOException {
+        assertEquals("name,\"child, name\"\n", Csv.of(new ArrayList<>(), Csv.Options.header()
+                .schema(CsvSchema.builder().addColumn("name").addColumn("child, name").build()))
+                .writeString());
+        assertEquals("", Csv.of(new ArrayList<>(), Csv.Options.noHeader()
+                .schema(CsvSchema.builder().addColumn("name").build()))
+                .writeString());
+    }
+
+    @Test
+    public void writeShapeMismatch() throws IOException {
+        List<Map<String, Object>> elements = new ArrayList<>();
+        elements.add(new LinkedHashMap<String, Object>(){{ put("name", "ross"); put("child", "none"); }});
+        elements.add(new LinkedHashMap<String, Object>(){{ put("name", "brandon"); put("child", Lists.of("a")); }});
+        elements.add(new LinkedHashMap<String, Object>(){{
+            put("name", "jane"); put("child", new LinkedHashMap<String, Object>(){{ put("name", "Jim"); }}); }});
+        // an object where the first row had a value is empty
+        assertEquals("name,child\nross,none\nbrandon,a\njane,\n", Csv.of(elements).writeString());
+
+        elements.remove(2);
+        elements.add(new LinkedHashMap<String, Object>(){{
+            put("name", "jane"); put("child", Lists.of(new LinkedHashMap<String, Object>())); }});
+        assertThrows(IOException.class, () -> Csv.of(elements).writeString());
+
+        // a value where the first row had an object is empty
+        elements.clear();
+        elements.add(new LinkedHashMap<String, Object>(){{
+            put("name", "jane"); put("child", new LinkedHashMap<String, Object>(){{ put("name", "Jim"); }}); }});
+        elements.add(new LinkedHashMap<String, Object>(){{ put("name", "ross"); put("child", null); }});
+        elements.add(new LinkedHashMap<String, Object>(){{ put("name", "ross"); put("child", "none"); }});
+        assertEquals("name,child.name\njane,Jim\nross,\nross,\n", Csv.of(elements).writeString());
+    }
+
+    @Test
+    public void writeOptionalObject() throws IOException {
+        // the nested object is null in the first row, so its fields are dropped from the rows after it
+        List<Parent> elements = Lists.of(new Parent("a", null), new Parent("b", new Person("x", "y")));
+        assertEquals("name,child\na,\nb,\n", Csv.toCsv(elements));
+        assertEquals("name,child.name\na,\nb,x\n", Csv.of(elements, Csv.Options.header()
+                .schema(CsvSchema.builder().addColumn("name").addColumn("child.name").build())).writeString());
+    }
+
+    @Test
+    public void writerPlans() throws IOException {
+        Csv.Options options = Csv.Options.header().exclude("child.address");
+        List<Person2> elements = new ArrayList<>();
+        elements.add(new Person2("ross", "Nashville, TN"));
+        assertEquals("name,address\n" +
+                "ross,\"Nashville, TN\"\n", Csv.of(elements, options).writeString());
+
+        elements.add(0, new Person2("brandon", "Dickerson").withChild(new Person("Brandon", "Dickerson")));
+        assertEquals("name,address,child.name\n" +
+                "brandon,Dickerson,Brandon\n" +
+                "ross,\"Nashville, TN\",\n", Csv.of(elements, options).writeString());
+    }
+
+    static class Biostat {
+        @JsonProperty("Name") public String name;
+        @JsonProperty("Sex") public String sex;
+        @JsonProperty("Age") public int age;
+        @JsonProperty("Height (in)") public int height;
+        @JsonProperty("Weight (lbs)") public double weight;
+    }
+
+    @JsonPropertyOrder({ "name", "address" })
     static class Person {
         public String name;
         public String address;
 
+        public Person() {}
+
         public Person(String name, String address) {
             this.name = name;
             this.address = address;
         }
     }
 
+    static class Parent {
+        public String name;
+        public Person child;
+
+        public Parent(String name, Person child) {
+            this.name = name;
+            this.child = child;
+        }
+    }
+
     static class Person2 {
         public String name;
         public String address;
@@ -0,0 +1,183 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the Fields DSL engine over the Person model.
+ * Each scenario stresses one dimension: nesting depth, selectivity, include vs exclude vs both, root and slicing.
+ * Run with {@code mvn -Pbench test -Dbench.include=FieldsDslJmhTest} or this main method.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FieldsDslJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FieldsDslJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    static final Map<String, IFields> scenarios = new HashMap<>();
+    static {
+        // narrow top level selection
+        scenarios.put("shallow", Fields.Include("firstName lastName"));
+        // two levels of objects
+        scenarios.put("nested", Fields.Include("id primaryAddress{ city state } account{ username }"));
+        // three levels through arrays
+        scenarios.put("deep", Fields.Include("purchases{ amount items{ name price } }"));
+        // low selectivity, most of the tree is kept
+        scenarios.put("wide", Fields.Exclude("account"));
+        scenarios.put("exclude", Fields.Exclude("addresses vehicles purchases{ items }"));
+        scenarios.put("both", Fields.Include("firstName purchases{ amount items }").exclude("purchases{ items{ id } }"));
+        scenarios.put("root", Fields.Root("purchases").include("amount purchasedOn"));
+        scenarios.put("slice", Fields.Include("firstName purchases[0:1]{ amount items[-1] } vehicles[0]"));
+    }
+
+    static final ObjectMapper mapper = MapperConfig.defaultConfig().build();
+    static final FieldsDSL renderer = new FieldsDSL(mapper);
+
+    @State(Scope.Benchmark)
+    public static class Payload {
+        @Param({ "1", "10", "100" })
+        public int size;
+
+        List<Person> people;
+        JsonNode tree;
+
+        @Setup
+        public void setup() {
+            // the same payload for every run
+            TestUtils.random.setSeed(size);
+            people = TestUtils.randomPeople(size);
+            tree = mapper.valueToTree(people);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Scenario {
+        @Param({ "shallow", "nested", "deep", "wide", "exclude", "both", "root", "slice" })
+        public String scenario;
+
+        IFields fields;
+
+        @Setup
+        public void setup() {
+            fields = scenarios.get(scenario);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Globs {
+        @Param({ "1", "10", "100", "1000" })
+        public int patterns;
+
+        IFields fields;
+
+        @Setup
+        public void setup() {
+            // prefix globs which match no key, so every key walks the compiled trie, plus one match at any depth
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < patterns; i++)
+                sb.append("x").append(i).append("* ");
+            fields = Fields.Include(sb.append("**.id").toString());
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Output {
+        @Param({ "false", "true" })
+        public boolean pretty;
+    }
+
+    @State(Scope.Thread)
+    public static class Copy {
+        JsonNode tree;
+
+        @Setup(Level.Invocation)
+        public void copy(Payload payload) {
+            // pruning mutates the tree, so each invocation gets its own
+            tree = payload.tree.deepCopy();
+        }
+    }
+
+    /**
+     * The whole Jackson5 path: tree conversion, pruning and writing
+     */
+    @Benchmark
+    public void render(Blackhole blackhole, Payload payload, Scenario scenario, Output output) throws IOException {
+        JsonNode json = renderer.json(payload.people, scenario.fields);
+        blackhole.consume(output.pretty ? json.toPrettyString() : json.toString());
+    }
+
+    /**
+     * Plain Jackson over the unpruned objects, the baseline of render
+     */
+    @Benchmark
+    public void jackson(Blackhole blackhole, Payload payload, Output output) throws IOException {
+        blackhole.consume(output.pretty
+                ? mapper.writerWithDefaultPrettyPrinter().writeValueAsString(payload.people)
+                : mapper.writer().writeValueAsString(payload.people));
+    }
+
+    /**
+     * Converting the objects to a tree, which render pays before pruning
+     */
+    @Benchmark
+    public void tree(Blackhole blackhole, Payload payload) {
+        blackhole.consume(mapper.valueToTree(payload.people));
+    }
+
+    /**
+     * Pruning alone, on a fresh copy of the tree
+     */
+    @Benchmark
+    public void prune(Blackhole blackhole, Copy copy, Scenario scenario) throws IOException {
+        blackhole.consume(renderer.json(copy.tree, scenario.fields));
+    }
+
+    /**
+     * Pruning by globs, the time per node should not grow with the number of patterns
+     */
+    @Benchmark
+    public void glob(Blackhole blackhole, Copy copy, Globs globs) throws IOException {
+        blackhole.consume(renderer.json(copy.tree, globs.fields));
+    }
+
+    /**
+     * Parsing the DSL alone, bypassing the cache
+     */
+    @Benchmark
+    public void parse(Blackhole blackhole, Scenario scenario) {
+        IFields fields = scenario.fields;
+        if (fields.include() != null)
+            blackhole.consume(renderer.parse(fields.include()));
+        if (fields.exclude() != null)
+            blackhole.consume(renderer.parse(fields.exclude()));
+        if (fields.root() != null)
+            blackhole.consume(renderer.parse(fields.root()));
+    }
+}
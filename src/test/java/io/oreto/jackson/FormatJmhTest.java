@@ -0,0 +1,106 @@
+package io.oreto.jackson;
+
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of writing and reading the test models as JSON, Smile and CBOR, with and without fields.
+ * The size of each encoding, and its ratio to JSON, is printed when the payload is set up.
+ * Run with {@code mvn -Pbench test -Dbench.include=FormatJmhTest} or this main method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class FormatJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(FormatJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    static final Jackson5 jackson5 = Jackson5.get();
+    static final IFields fields = Fields.Include("id firstName lastName purchases{ amount items{ name price } }");
+
+    @Param({ "10" })
+    public int size;
+
+    @Param({ "JSON", "SMILE", "CBOR" })
+    public Format format;
+
+    List<Person> people;
+    byte[] encoded;
+    byte[] selected;
+
+    @Setup
+    public void setup() throws IOException {
+        // the same payload for every run
+        TestUtils.random.setSeed(size);
+        people = TestUtils.randomPeople(size);
+        encoded = encode(people, format);
+        selected = jackson5.render(people, fields, format);
+        long json = encode(people, Format.JSON).length;
+        long jsonFields = jackson5.render(people, fields, Format.JSON).length;
+        System.out.printf("%n%s: %d KB (%.0f%% of JSON), with fields %d KB (%.0f%% of JSON)%n"
+                , format
+                , encoded.length / 1024, encoded.length * 100.0 / json
+                , selected.length / 1024, selected.length * 100.0 / jsonFields);
+    }
+
+    private static byte[] encode(Object o, Format format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jackson5.write(out, o, false, format);
+        return out.toByteArray();
+    }
+
+    /**
+     * Bytes are discarded so only the encoding is measured
+     */
+    static final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    @Benchmark
+    public void write() throws IOException {
+        jackson5.write(sink, people, false, format);
+    }
+
+    @Benchmark
+    public void writeFields() throws IOException {
+        jackson5.write(sink, people, fields, format);
+    }
+
+    @Benchmark
+    public Person[] read() throws IOException {
+        return jackson5.deserialize(encoded, Person[].class, format);
+    }
+
+    @Benchmark
+    public Person[] readFields() throws IOException {
+        return jackson5.deserialize(encoded, Person[].class, fields, format);
+    }
+}
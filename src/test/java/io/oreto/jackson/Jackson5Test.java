@@ -2,20 +2,44 @@ package io.oreto.jackson;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.oreto.jackson.models.Account;
 import io.oreto.jackson.models.Item;
 import io.oreto.jackson.models.Person;
 import io.oreto.jackson.models.Purchase;
 import io.oreto.jackson.pojos.PojoDate;
+import io.oreto.jackson.pojos.PojoHook;
+import io.oreto.jackson.pojos.PojoNode;
 import io.oreto.jackson.util.TestUtils;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -31,6 +55,65 @@ public class Jackson5Test {
         assertEquals(NullNode.getInstance(), jackson5.json(null, Fields.Include("name")));
     }
 
+    @Test
+    public void writeGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bytes, 1024, 3)) {
+            jackson5.write(out, people, Fields.Exclude("address"));
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(jackson5.serialize(people, Fields.Exclude("address"))
+                    , new String(TestUtils.readAll(in), StandardCharsets.UTF_8));
+        }
+
+        bytes.reset();
+        new ParallelGzipOutputStream(bytes).close();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void writeParallel() throws IOException {
+        IFields fields = Fields.Include("id firstName purchases{ amount items[0] }");
+        ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        jackson5.write(sequential, people);
+        jackson5.writeParallel(parallel, people, null, 3, 3);
+        assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+
+        for (int chunkSize : new int[] { 1, 7, 19 }) {
+            sequential.reset();
+            parallel.reset();
+            jackson5.write(sequential, people, fields);
+            jackson5.writeParallel(parallel, people, fields, chunkSize, 4);
+            assertArrayEquals(sequential.toByteArray(), parallel.toByteArray());
+        }
+
+        // a root needs the whole list
+        parallel.reset();
+        jackson5.writeParallel(parallel, people, Fields.Root("[0]").include("id"), 2, 2);
+        assertEquals(jackson5.serialize(people, Fields.Root("[0]").include("id")), parallel.toString("UTF-8"));
+    }
+
+    @Test
+    public void readGzip() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new ParallelGzipOutputStream(bytes, 512, 2)) {
+            jackson5.write(out, people);
+        }
+        try (Stream<Person> stream = jackson5.stream(new ByteArrayInputStream(bytes.toByteArray()), Person.class)) {
+            assertEquals(people.stream().map(Person::getId).collect(Collectors.toList())
+                    , stream.map(Person::getId).collect(Collectors.toList()));
+        }
+        assertEquals(people.size()
+                , jackson5.deserialize(new ByteArrayInputStream(bytes.toByteArray()), Person[].class).length);
+        // plain input is read as is
+        assertEquals(people.get(0).getId(), jackson5.deserialize(
+                new ByteArrayInputStream(jackson5.serialize(people.get(0)).getBytes(StandardCharsets.UTF_8))
+                , Person.class).getId());
+    }
+
     @Test
     public void serializeMap() throws JsonProcessingException {
         String json = jackson5.serialize(new HashMap<String, String>(){{ put("test", "t1"); }});
@@ -71,6 +154,60 @@ public class Jackson5Test {
                         .forEach(item -> assertTrue(item.has("name") && item.size() == 1))));
     }
 
+    @Test
+    public void globs() throws JsonProcessingException {
+        JsonNode jsonNode = jackson5.json(people, Fields.Include("first* last* primaryAddress{ * }"));
+        jsonNode.forEach(person -> {
+            assertEquals(3, person.size());
+            assertTrue(person.has("firstName") && person.has("lastName"));
+            assertEquals(6, person.get("primaryAddress").size());
+        });
+
+        jsonNode = jackson5.json(people, Fields.Include("first* addr*{ city }"));
+        jsonNode.forEach(person -> {
+            assertEquals(2, person.size());
+            person.get("addresses").forEach(address -> assertTrue(address.has("city") && address.size() == 1));
+        });
+
+        jsonNode = jackson5.json(people, Fields.Exclude("last* purchases{ * }"));
+        jsonNode.forEach(person -> {
+            assertTrue(person.has("firstName") && !person.has("lastName"));
+            person.get("purchases").forEach(purchase -> assertEquals(0, purchase.size()));
+        });
+
+        // a * is only a glob at the end of a name, for properties and objects alike
+        assertThrows(IllegalArgumentException.class, () -> jackson5.json(people, Fields.Exclude("*Name")));
+        assertThrows(IllegalArgumentException.class, () -> jackson5.json(people, Fields.Include("first*e")));
+        assertThrows(IllegalArgumentException.class, () -> jackson5.json(people, Fields.Include("a*s{ city }")));
+        assertThrows(IllegalArgumentException.class, () -> jackson5.json(people, Fields.Include("addr**{ city }")));
+    }
+
+    @Test
+    public void deepSelector() throws JsonProcessingException {
+        JsonNode jsonNode = jackson5.json(people, Fields.Include("firstName **.id"));
+        jsonNode.forEach(person -> {
+            assertTrue(person.has("firstName") && person.has("id"));
+            assertFalse(person.has("account") || person.has("vehicles"));
+            assertEquals(1, person.get("primaryAddress").size());
+            // containers with nothing selected, such as empty items, are dropped
+            person.path("purchases").forEach(purchase -> {
+                assertTrue(purchase.has("id") && !purchase.has("amount"));
+                if (purchase.has("items"))
+                    purchase.get("items").forEach(item -> assertTrue(item.has("id") && item.size() == 1));
+            });
+        });
+
+        jsonNode = jackson5.json(people, Fields.Exclude("purchases{ **.id }"));
+        jsonNode.forEach(person -> {
+            assertTrue(person.has("id") && person.get("primaryAddress").has("id"));
+            person.get("purchases").forEach(purchase -> {
+                assertFalse(purchase.has("id"));
+                assertTrue(purchase.has("amount"));
+                purchase.get("items").forEach(item -> assertTrue(item.has("name") && !item.has("id")));
+            });
+        });
+    }
+
     @Test
     public void excludePurchaseItemData() throws IOException {
         List<Person> personList =
@@ -216,4 +353,401 @@ public class Jackson5Test {
         assertEquals("02/11/2022 23:36", json.get("sqlDate").asText());
         assertEquals("23:36", json.get("time").asText());
     }
+
+    @Test
+    public void metrics() throws IOException, NoSuchJackson5 {
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        Jackson5.supply("metrics", MapperConfig.defaultConfig());
+        Jackson5 jackson5 = Jackson5.getOrThrow("metrics");
+        int size = jackson5.serialize(people.get(0)).getBytes(StandardCharsets.UTF_8).length;
+        jackson5.metrics(metrics);
+
+        String json = jackson5.serialize(people, Fields.Include("id firstName purchases[0]{ amount }"));
+        jackson5.serialize(people, Fields.Include("id firstName purchases[0]{ amount }"));
+        jackson5.deserializeCollection(json, Person.class);
+        jackson5.write(new ByteArrayOutputStream(), people.get(0));
+
+        assertEquals(3, metrics.count("metrics", Jackson5Metrics.Operation.SERIALIZE));
+        assertEquals(1, metrics.count("metrics", Jackson5Metrics.Operation.DESERIALIZE));
+        assertTrue(metrics.histogram("metrics", Jackson5Metrics.Operation.SERIALIZE).percentile(0.99) > 0);
+        assertEquals(2 * json.getBytes(StandardCharsets.UTF_8).length + size
+                , metrics.bytes("metrics", Jackson5Metrics.Operation.SERIALIZE));
+        assertTrue(metrics.visited("metrics") >= 2 * people.size());
+        assertTrue(metrics.pruned("metrics") > 0);
+        assertEquals(1, metrics.events("metrics", Jackson5Metrics.Cache.HIT));
+        assertEquals(1, metrics.events("metrics", Jackson5Metrics.Cache.MISS));
+
+        // the cache is bounded, the oldest selections make room for new ones
+        for (int i = 0; i <= FieldsDSL.DSL_CACHE_SIZE; i++)
+            jackson5.json(people.get(0), Fields.Include("id metrics" + i));
+        assertTrue(metrics.events("metrics", Jackson5Metrics.Cache.EVICTION) > 0);
+
+        // the default Jackson5 is not measured
+        Jackson5.get().serialize(people);
+        assertEquals(0, metrics.count(Jackson5.DEFAULT_NAME, Jackson5Metrics.Operation.SERIALIZE));
+    }
+
+    @Test
+    public void flightRecorder() throws IOException, ParseException {
+        Path file = Files.createTempFile("jackson5", ".jfr");
+        try (Recording recording = new Recording(Configuration.create(new InputStreamReader(
+                Jackson5.class.getResourceAsStream("/jackson5.jfc"), StandardCharsets.UTF_8)))) {
+            recording.enable("io.oreto.jackson.Serialize").withThreshold(Duration.ZERO);
+            recording.enable("io.oreto.jackson.Prune").withThreshold(Duration.ZERO);
+            recording.start();
+            jackson5.serialize(people, Fields.Include("id firstName flightRecorder"));
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(it -> it.getEventType().getName().startsWith("io.oreto.jackson"))
+                    .collect(Collectors.toList());
+            RecordedEvent serialize = events.stream()
+                    .filter(it -> it.getEventType().getName().equals("io.oreto.jackson.Serialize"))
+                    .findFirst().orElseThrow(AssertionError::new);
+            assertEquals("include: id firstName flightRecorder", serialize.getString("dsl"));
+            assertTrue(serialize.getLong("output") > 0);
+            assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.oreto.jackson.Prune")
+                    && it.getLong("input") == people.size()));
+            assertTrue(events.stream().anyMatch(it -> it.getEventType().getName().equals("io.oreto.jackson.Compile")));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void profiler() throws IOException, NoSuchJackson5 {
+        List<String> slow = new ArrayList<>();
+        DslProfiler profiler = new DslProfiler().slowThreshold(0, TimeUnit.MILLISECONDS).log(slow::add);
+        Jackson5.supply("profiled", MapperConfig.defaultConfig());
+        Jackson5 jackson5 = Jackson5.getOrThrow("profiled").profiler(profiler);
+
+        jackson5.serialize(people, Fields.Include("id purchases[0:1]{ amount }"));
+        jackson5.serialize(people, Fields.Include("id  purchases[0:1] {amount}"));
+        jackson5.serialize(people, Fields.Exclude("purchases"));
+
+        Map<String, DslProfiler.Stats> stats = profiler.stats();
+        assertEquals(2, stats.size());
+        DslProfiler.Stats include = stats.get("include: id purchases[0:1] { amount }");
+        assertEquals(2, include.count());
+        assertTrue(include.max() >= include.mean());
+        assertTrue(include.visited() > 2 * people.size());
+        assertTrue(include.removed() > 0);
+        assertTrue(include.allocated() > 0);
+        assertEquals(3, slow.size());
+        assertTrue(slow.get(0).contains("purchases[0:1]{..}"));
+        assertTrue(slow.get(0).contains("purchases -> amount"));
+
+        // nothing is measured when no render is sampled
+        profiler.reset();
+        profiler.sampleRate(0);
+        jackson5.serialize(people, Fields.Exclude("purchases"));
+        assertTrue(profiler.stats().isEmpty());
+    }
+
+    @Test
+    public void limits() throws IOException, NoSuchJackson5 {
+        Jackson5.supply("limited", MapperConfig.defaultConfig());
+        // no limits until the instance opts in
+        Jackson5.getOrThrow("limited").serialize(people, Fields.Include("purchases{ items{ vendor{ name } } }"));
+        Jackson5 jackson5 = Jackson5.getOrThrow("limited")
+                .limits(FieldsLimits.defaults().maxLength(80).maxDepth(3).maxFields(6).maxSliceWidth(10));
+
+        jackson5.serialize(people, Fields.Include("id purchases[0:9]{ amount items{ name } }"));
+        FieldsLimitExceeded e = assertThrows(FieldsLimitExceeded.class
+                , () -> jackson5.serialize(people, Fields.Include("purchases{ items{ vendor{ name } } }")));
+        assertEquals("depth", e.getLimit());
+        assertEquals(3, e.getMax());
+        assertEquals("depth", assertThrows(FieldsLimitExceeded.class
+                , () -> jackson5.serialize(people, Fields.Include("purchases.items.vendor.name"))).getLimit());
+        assertEquals("fields", assertThrows(FieldsLimitExceeded.class
+                , () -> jackson5.serialize(people, Fields.Include("a b c d").exclude("e f g"))).getLimit());
+        assertEquals("slice", assertThrows(FieldsLimitExceeded.class
+                , () -> jackson5.json(people, Fields.Include("purchases[0:10]"))).getLimit());
+        assertEquals("length", assertThrows(FieldsLimitExceeded.class
+                , () -> jackson5.map(people.get(0), Fields.Exclude(String.join("", Collections.nCopies(81, "a")))))
+                .getLimit());
+
+        jackson5.limits(FieldsLimits.none());
+        jackson5.serialize(people, Fields.Include("purchases{ items{ vendor{ name } } }"));
+    }
+
+    @Test
+    public void async() throws Exception {
+        IFields fields = Fields.Include("id firstName purchases{ amount }");
+        assertEquals(jackson5.serialize(people, fields), jackson5.serializeAsync(people, fields).get());
+        assertEquals(jackson5.serialize(people, true), jackson5.serializeAsync(people, null, true).get());
+        assertEquals(jackson5.json(people, fields), jackson5.jsonAsync(people, fields).get());
+        String json = jackson5.serialize(people.get(0));
+        assertEquals(json, jackson5.serialize(jackson5.deserializeAsync(json, Person.class).get()));
+        assertEquals(jackson5.serialize(people.get(0), Fields.Include("id lastName"))
+                , jackson5.serialize(jackson5.deserializeAsync(json, Person.class, Fields.Include("id lastName")).get()
+                        , Fields.Include("id lastName")));
+        ExecutionException failed = assertThrows(ExecutionException.class
+                , () -> jackson5.deserializeAsync("{", Person.class).get());
+        assertTrue(failed.getCause() instanceof JsonProcessingException);
+
+        // calls are admitted up to maxConcurrency + maxQueued, the executor here holds them until they are run
+        Jackson5.supply("async", MapperConfig.defaultConfig());
+        Jackson5 async = Jackson5.getOrThrow("async");
+        Deque<Runnable> held = new ArrayDeque<>();
+        async.async(AsyncLimits.defaults().maxConcurrency(1).maxQueued(1).executor(held::add));
+        CompletableFuture<String> first = async.serializeAsync(people.get(0));
+        CompletableFuture<String> second = async.serializeAsync(people.get(1));
+        CompletableFuture<String> rejected = async.serializeAsync(people.get(2));
+        failed = assertThrows(ExecutionException.class, rejected::get);
+        AsyncLimitExceeded exceeded = (AsyncLimitExceeded) failed.getCause();
+        assertEquals(3, exceeded.getValue());
+        assertEquals(2, exceeded.getMax());
+        second.cancel(true);
+        held.forEach(Runnable::run);
+        held.clear();
+        assertEquals(jackson5.serialize(people.get(0)), first.get());
+        assertTrue(second.isCancelled());
+        // finished calls make room
+        CompletableFuture<String> third = async.serializeAsync(people.get(2));
+        held.forEach(Runnable::run);
+        assertEquals(jackson5.serialize(people.get(2)), third.get());
+
+        // cancelling stops a render partway through
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        for (boolean tree : new boolean[] { false, true }) {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch cancelled = new CountDownLatch(1);
+            AtomicInteger reads = new AtomicInteger();
+            List<PojoHook> hooks = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int id = i;
+                hooks.add(new PojoHook(id, () -> {
+                    reads.incrementAndGet();
+                    if (id == 0) {
+                        started.countDown();
+                        try {
+                            cancelled.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }));
+            }
+            async.async(AsyncLimits.defaults().executor(pool));
+            CompletableFuture<?> render = tree
+                    ? async.jsonAsync(hooks, Fields.Include("id"))
+                    : async.serializeAsync(hooks);
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            render.cancel(true);
+            cancelled.countDown();
+            // wait for the render to give up
+            pool.submit(() -> {}).get();
+            assertTrue(render.isCancelled());
+            assertEquals(1, reads.get());
+        }
+        pool.shutdown();
+    }
+
+    @Test
+    public void budget() throws IOException, NoSuchJackson5 {
+        Jackson5.supply("budgeted", MapperConfig.defaultConfig());
+        Jackson5 jackson5 = Jackson5.getOrThrow("budgeted").budget(TraversalBudget.defaults().maxDepth(4));
+
+        // the parent and child refer to each other, the walk stops at the depth budget
+        PojoNode root = new PojoNode("root").add(new PojoNode("child"));
+        JsonNode parent = jackson5.json(root).get("children").get(0).get("parent");
+        assertEquals(TraversalBudget.MARKER, parent.get("name").asText());
+        assertEquals(TraversalBudget.MARKER, parent.get("children").asText());
+
+        jackson5.budget(TraversalBudget.defaults().maxElements(3).marker("more"));
+        JsonNode jsonNode = jackson5.json(people);
+        assertEquals(4, jsonNode.size());
+        assertEquals("more", jsonNode.get(3).asText());
+        assertTrue(jsonNode.get(0).get("purchases").size() <= 4);
+        // pruning keeps only the objects of an array
+        assertEquals(3, jackson5.json(people, Fields.Exclude("account")).size());
+
+        jackson5.budget(TraversalBudget.defaults().maxNodes(10));
+        jsonNode = jackson5.json(people);
+        // the first person runs out of nodes, so the rest of the people are skipped
+        assertEquals(2, jsonNode.size());
+        assertEquals(TraversalBudget.MARKER, jsonNode.get(1).asText());
+
+        jackson5.budget(TraversalBudget.defaults().maxNodes(10).policy(TraversalBudget.Policy.THROW));
+        TraversalBudgetExceeded e = assertThrows(TraversalBudgetExceeded.class, () -> jackson5.json(people));
+        assertEquals("nodes", e.getBudget());
+        assertEquals(10, e.getMax());
+        assertEquals("depth", assertThrows(TraversalBudgetExceeded.class, () -> jackson5
+                .budget(TraversalBudget.defaults().maxDepth(4).policy(TraversalBudget.Policy.THROW))
+                .serialize(root, Fields.Include("name"))).getBudget());
+
+        jackson5.budget(TraversalBudget.defaults());
+        assertEquals(Jackson5Test.jackson5.json(people), jackson5.json(people));
+    }
+
+    @Test
+    public void renderCache() throws Exception {
+        Jackson5.supply("cached", MapperConfig.defaultConfig());
+        InMemoryMetrics metrics = new InMemoryMetrics();
+        RenderCache cache = new RenderCache().maxEntries(2);
+        Jackson5 jackson5 = Jackson5.getOrThrow("cached").renderCache(cache).metrics(metrics);
+        IFields fields = Fields.Include("firstName purchases{ amount }");
+
+        String json = Jackson5Test.jackson5.serialize(people, fields);
+        assertEquals(json, jackson5.serialize(people, fields));
+        // the same expression spaced differently is the same render
+        assertEquals(json, jackson5.serialize(people, Fields.Include("firstName  purchases { amount }")));
+        assertArrayEquals(json.getBytes(StandardCharsets.UTF_8), jackson5.render(people, fields, false));
+        assertEquals(1, cache.misses());
+        assertEquals(2, cache.hits());
+        assertEquals(2, metrics.renders("cached", Jackson5Metrics.Cache.HIT));
+        assertEquals(json.getBytes(StandardCharsets.UTF_8).length, cache.bytes());
+
+        // keyed by version, another object of the same version is not rendered again
+        assertEquals(json, new String(jackson5.render("v1", people, fields, false), StandardCharsets.UTF_8));
+        assertEquals(json, new String(jackson5.render("v1", new ArrayList<>(people), fields, false)
+                , StandardCharsets.UTF_8));
+        assertEquals(2, cache.misses());
+
+        // concurrent misses render once
+        List<Person> copy = new ArrayList<>(people);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++)
+            futures.add(executor.submit(() -> jackson5.serialize(copy, fields, true)));
+        for (Future<String> future : futures)
+            assertEquals(Jackson5Test.jackson5.serialize(people, fields, true), future.get());
+        executor.shutdown();
+        assertEquals(3, cache.misses());
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+
+        cache.invalidate(copy);
+        assertEquals(1, cache.size());
+
+        jackson5.renderCache(new RenderCache().offHeap(true).maxBytes(json.length() * 2L));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        jackson5.write(out, people, fields, false);
+        jackson5.write(out, people, fields, false);
+        assertEquals(json + json, out.toString("UTF-8"));
+        assertEquals(1, jackson5.renderCache().hits());
+
+        // a render bigger than the cache is not cached and evicts nothing
+        RenderCache small = new RenderCache().maxBytes(json.length() / 2);
+        jackson5.renderCache(small);
+        jackson5.serialize(people.subList(0, 1), Fields.Include("firstName"));
+        assertEquals(json, jackson5.serialize(people, fields));
+        assertEquals(1, small.size());
+        assertEquals(0, small.evictions());
+        assertEquals(json, jackson5.serialize(people, fields));
+        assertEquals(3, small.misses());
+        jackson5.renderCache(null);
+    }
+
+    @Test
+    public void patch() throws IOException {
+        Person person = TestUtils.randomPerson();
+        IFields fields = Fields.Exclude("account");
+        JsonNode previous = jackson5.json(person, fields);
+
+        JsonNode patch = jackson5.patch("client", person, fields);
+        assertEquals(1, patch.size());
+        assertEquals("replace", patch.get(0).get("op").asText());
+        assertEquals("", patch.get(0).get("path").asText());
+        assertEquals(0, jackson5.patch("client", person, fields).size());
+
+        person.setFirstName("changed");
+        person.getPurchases().add(TestUtils.randomPurchase());
+        person.setVehicles(new ArrayList<>());
+        person.setPrimaryAddress(null);
+        patch = jackson5.patch("client", person, fields);
+        JsonNode current = jackson5.json(person, fields);
+        assertTrue(patch.size() < 10);
+        assertTrue(patch.toString().contains("{\"op\":\"replace\",\"path\":\"/firstName\",\"value\":\"changed\"}"));
+        assertEquals(current, apply(previous, patch));
+
+        // another client starts from the whole document
+        assertEquals(current, jackson5.patch("other", person, fields).get(0).get("value"));
+        jackson5.forget("client");
+        assertEquals("", jackson5.patch("client", person, fields).get(0).get("path").asText());
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("a/b", 1);
+        jackson5.patch("map", map, Fields.Include("a/b"));
+        map.put("a/b", 2);
+        assertEquals("/a~1b", jackson5.patch("map", map, Fields.Include("a/b")).get(0).get("path").asText());
+    }
+
+    @Test
+    public void formats() throws IOException, NoSuchJackson5 {
+        List<IFields> selections = Arrays.asList(Fields.Include("id firstName purchases{ amount items[0:2] }")
+                , Fields.Exclude("account vehicles")
+                , Fields.Root("[1:3]").include("lastName primaryAddress")
+                , Fields.Include("purchases[-1]{ items{ name price } }"));
+        byte[] json = jackson5.render(people, selections.get(0), false);
+        for (Format format : new Format[] { Format.SMILE, Format.CBOR }) {
+            for (IFields fields : selections) {
+                byte[] bytes = jackson5.render(people, fields, format);
+                // numbers may come back as narrower nodes, the values are the same
+                assertEquals(jackson5.serialize(people, fields)
+                        , jackson5.deserialize(bytes, JsonNode.class, format).toString());
+            }
+            assertTrue(jackson5.render(people, selections.get(0), format).length < json.length);
+        }
+        // the header of the Smile render flags the shared names and values
+        byte[] smile = jackson5.render(people, selections.get(0), Format.SMILE);
+        assertEquals(":)\n", new String(smile, 0, 3, StandardCharsets.US_ASCII));
+        assertEquals(0x03, smile[3] & 0x03);
+
+        Jackson5.supply("smile", MapperConfig.defaultConfig().format(Format.SMILE));
+        Jackson5 named = Jackson5.getOrThrow("smile").renderCache(new RenderCache());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        named.write(out, people, selections.get(0));
+        assertArrayEquals(smile, out.toByteArray());
+        out.reset();
+        named.writeParallel(out, people, null, 3, 3);
+        assertEquals(people.size(), named.deserialize(out.toByteArray(), Person[].class).length);
+        try (Stream<Person> stream = named.stream(new ByteArrayInputStream(out.toByteArray()), Person.class)) {
+            assertEquals(people.get(3).getId(), stream.skip(3).findFirst().map(Person::getId).orElse(null));
+        }
+        Person person = named.deserialize(smile, Person[].class, Fields.Include("firstName"))[0];
+        assertEquals(people.get(0).getFirstName(), person.getFirstName());
+        assertNull(person.getId());
+        // strings are JSON, and the cached renders of each format are kept apart
+        assertEquals(new String(json, StandardCharsets.UTF_8), named.serialize(people, selections.get(0)));
+        assertArrayEquals(smile, named.render(people, selections.get(0), false));
+        assertEquals(2, named.renderCache().misses());
+        named.renderCache(null);
+    }
+
+    /**
+     * Apply the add, remove and replace operations of a JSON Patch
+     */
+    private static JsonNode apply(JsonNode json, JsonNode patch) {
+        JsonNode document = json.deepCopy();
+        for (JsonNode op : patch) {
+            String path = op.get("path").asText();
+            if (path.isEmpty()) {
+                document = op.get("value");
+                continue;
+            }
+            int slash = path.lastIndexOf('/');
+            JsonNode parent = document.at(path.substring(0, slash));
+            String token = path.substring(slash + 1).replace("~1", "/").replace("~0", "~");
+            String kind = op.get("op").asText();
+            if (parent.isArray()) {
+                ArrayNode array = (ArrayNode) parent;
+                if (token.equals("-"))
+                    array.add(op.get("value"));
+                else if (kind.equals("remove"))
+                    array.remove(Integer.parseInt(token));
+                else
+                    array.set(Integer.parseInt(token), op.get("value"));
+            } else {
+                ObjectNode object = (ObjectNode) parent;
+                if (kind.equals("remove"))
+                    object.remove(token);
+                else
+                    object.set(token, op.get("value"));
+            }
+        }
+        return document;
+    }
 }
@@ -0,0 +1,89 @@
+package io.oreto.jackson;
+
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of serializing a large list on one thread versus ordered chunks on a pool of workers.
+ * The parallel writes should scale with the number of cores up to the parallelism, the output is the same.
+ * Run with {@code mvn -Pbench test -Dbench.include=ParallelWriteJmhTest} or this main method.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ParallelWriteJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(ParallelWriteJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    static final Jackson5 jackson5 = Jackson5.get();
+    static final IFields fields = Fields.Include("id firstName lastName purchases{ amount items{ name price } }");
+
+    @Param({ "10000" })
+    public int size;
+
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    List<Person> people;
+
+    @Setup
+    public void setup() {
+        // the same payload for every run
+        TestUtils.random.setSeed(size);
+        people = TestUtils.randomPeople(size);
+    }
+
+    /**
+     * Bytes are discarded so only the encoding is measured
+     */
+    static final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    @Benchmark
+    public void sequential() throws IOException {
+        jackson5.write(sink, people);
+    }
+
+    @Benchmark
+    public void parallel() throws IOException {
+        jackson5.writeParallel(sink, people, null, 256, parallelism);
+    }
+
+    @Benchmark
+    public void sequentialFields() throws IOException {
+        jackson5.write(sink, people, fields);
+    }
+
+    @Benchmark
+    public void parallelFields() throws IOException {
+        jackson5.writeParallel(sink, people, fields, 256, parallelism);
+    }
+}
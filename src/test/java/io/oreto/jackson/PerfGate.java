@@ -0,0 +1,142 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Compares JMH json results with a stored baseline and fails when time/op or bytes/op regress past a threshold,
+ * or a baseline benchmark is missing from the results.
+ * Run by the perf-gate profile after {@link PerfGateJmhTest}:
+ * <pre>
+ *     mvn -Pperf-gate test                            compare with src/test/resources/perf-baseline.json
+ *     mvn -Pperf-gate test -Dperf.update=true         record the results as the new baseline
+ *     mvn -Pperf-gate test -Dperf.time=0.5 -Dperf.alloc=0.2
+ * </pre>
+ * The thresholds are the allowed relative increase, 0.25 means 25% slower.
+ * A missing baseline fails the gate, it is only written with -Dperf.update=true.
+ */
+public class PerfGate {
+    static final String ALLOC = "·gc.alloc.rate.norm";
+    static final ObjectMapper mapper = new ObjectMapper();
+
+    public static void main(String[] args) throws IOException {
+        Path baseline = Paths.get(args[0]);
+        Path results = Paths.get(args[1]);
+        double time = Double.parseDouble(System.getProperty("perf.time", "0.25"));
+        double alloc = Double.parseDouble(System.getProperty("perf.alloc", "0.10"));
+
+        Map<String, Score> current = scores(mapper.readTree(results.toFile()));
+        if (Boolean.getBoolean("perf.update")) {
+            save(baseline, current);
+            System.out.printf("perf baseline written to %s%n", baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.err.printf("no perf baseline at %s, record one with -Dperf.update=true%n", baseline);
+            System.exit(1);
+        }
+
+        List<String> regressions = compare(load(baseline), current, time, alloc);
+        if (!regressions.isEmpty()) {
+            regressions.forEach(System.err::println);
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Compare the scores of each benchmark with its baseline
+     * @param baseline The baseline scores
+     * @param current The current scores
+     * @param time The allowed relative increase of time/op
+     * @param alloc The allowed relative increase of bytes/op
+     * @return A message for each regression, unit mismatch and baseline benchmark missing from the results
+     */
+    static List<String> compare(Map<String, Score> baseline, Map<String, Score> current, double time, double alloc) {
+        List<String> regressions = new ArrayList<>();
+        System.out.printf("%-60s %14s %14s %14s %14s%n", "benchmark", "time", "baseline", "B/op", "baseline");
+        current.forEach((name, score) -> {
+            Score base = baseline.get(name);
+            System.out.printf("%-60s %14.3f %14s %14.0f %14s%n", name, score.time
+                    , base == null ? "-" : String.format("%.3f", base.time)
+                    , score.alloc
+                    , base == null ? "-" : String.format("%.0f", base.alloc));
+            if (base == null)
+                return;
+            // times in different units cannot be compared, the baseline must be recorded again
+            if (!score.unit.equals(base.unit)) {
+                regressions.add(String.format("%s time unit changed %s -> %s, record a new baseline"
+                        , name, base.unit, score.unit));
+                return;
+            }
+            if (score.time > base.time * (1 + time))
+                regressions.add(String.format("%s time/op regressed %.3f -> %.3f %s"
+                        , name, base.time, score.time, score.unit));
+            // a few bytes either way is noise
+            if (score.alloc > base.alloc * (1 + alloc) + 64)
+                regressions.add(String.format("%s bytes/op regressed %.0f -> %.0f", name, base.alloc, score.alloc));
+        });
+        // a benchmark which was renamed, removed or failed to run would otherwise pass unnoticed
+        baseline.keySet().stream().filter(name -> !current.containsKey(name))
+                .forEach(name -> regressions.add(String.format("%s missing from the results", name)));
+        return regressions;
+    }
+
+    /**
+     * Read the scores of a JMH json result
+     * @param results The JMH result array
+     * @return The scores keyed by benchmark and parameters
+     */
+    static Map<String, Score> scores(JsonNode results) {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : results) {
+            StringBuilder name = new StringBuilder(result.get("benchmark").asText());
+            JsonNode params = result.get("params");
+            if (params != null) {
+                new TreeMap<>(mapper.convertValue(params, Map.class))
+                        .forEach((k, v) -> name.append(':').append(k).append('=').append(v));
+            }
+            JsonNode allocation = result.path("secondaryMetrics").path(ALLOC).path("score");
+            scores.put(name.toString(), new Score(result.get("primaryMetric").get("score").asDouble()
+                    , result.get("primaryMetric").get("scoreUnit").asText()
+                    , allocation.asDouble()));
+        }
+        return scores;
+    }
+
+    static Map<String, Score> load(Path baseline) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        mapper.readTree(baseline.toFile()).fields().forEachRemaining(it -> scores.put(it.getKey()
+                , new Score(it.getValue().get("time").asDouble()
+                        , it.getValue().get("unit").asText()
+                        , it.getValue().get("alloc").asDouble())));
+        return scores;
+    }
+
+    static void save(Path baseline, Map<String, Score> scores) throws IOException {
+        ObjectNode json = mapper.createObjectNode();
+        scores.forEach((name, score) -> json.putObject(name)
+                .put("time", score.time)
+                .put("unit", score.unit)
+                .put("alloc", score.alloc));
+        mapper.writerWithDefaultPrettyPrinter().writeValue(baseline.toFile(), json);
+    }
+
+    static class Score {
+        final double time;
+        final String unit;
+        final double alloc;
+
+        Score(double time, String unit, double alloc) {
+            this.time = time;
+            this.unit = unit;
+            this.alloc = alloc;
+        }
+    }
+}
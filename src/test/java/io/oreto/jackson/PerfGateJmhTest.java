@@ -0,0 +1,85 @@
+package io.oreto.jackson;
+
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.pojos.PojoDate;
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The core benchmarks held to a performance budget by the perf-gate profile, see {@link PerfGate}.
+ * Payloads are seeded so runs are comparable with the stored baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PerfGateJmhTest {
+    static final IFields fields = Fields.Include("id firstName primaryAddress{ city } purchases[0:2]{ amount items{ name } }");
+
+    Jackson5 jackson5;
+    List<Person> people;
+    String json;
+    String csv;
+    PojoDate dates;
+    String datesJson;
+
+    @Setup
+    public void setup() throws IOException {
+        jackson5 = Jackson5.get();
+        TestUtils.random.setSeed(5);
+        people = TestUtils.randomPeople(5);
+        // keep the payload small so the gate runs quickly
+        for (Person person : people) {
+            person.setPurchases(person.getPurchases().subList(0, Math.min(3, person.getPurchases().size())));
+            person.getPurchases().forEach(it -> it.setItems(it.getItems().subList(0, Math.min(10, it.getItems().size()))));
+        }
+        json = jackson5.serialize(people);
+
+        Path path = Files.createTempFile("biostats", ".csv");
+        try {
+            TestUtils.biostats(path, 1000);
+            csv = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } finally {
+            Files.delete(path);
+        }
+
+        dates = new PojoDate();
+        dates.setDate(new Date(1644640560000L));
+        dates.setSqlDate(new java.sql.Date(1644640560000L));
+        datesJson = jackson5.serialize(dates);
+    }
+
+    @Benchmark
+    public void dslSerialize(Blackhole blackhole) throws IOException {
+        blackhole.consume(jackson5.serialize(people, fields));
+    }
+
+    @Benchmark
+    public void dslDeserialize(Blackhole blackhole) throws IOException {
+        blackhole.consume(jackson5.deserializeCollection(json, Person.class, fields));
+    }
+
+    @Benchmark
+    public void csvRead(Blackhole blackhole) {
+        blackhole.consume(Csv.from(csv));
+    }
+
+    @Benchmark
+    public void csvWrite(Blackhole blackhole) throws IOException {
+        blackhole.consume(Csv.toCsv(people, Csv.Options.header().exclude("addresses", "purchases", "vehicles")));
+    }
+
+    @Benchmark
+    public void dates(Blackhole blackhole) throws IOException {
+        blackhole.consume(jackson5.serialize(dates));
+        blackhole.consume(jackson5.deserialize(datesJson, PojoDate.class));
+    }
+}
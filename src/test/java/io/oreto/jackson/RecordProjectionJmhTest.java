@@ -0,0 +1,73 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.util.TestUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Projection of records, which only serializes the included top level properties from the Java 17 classes on.
+ * The records are compiled by the mrjar profile, so run on JDK 17 or later, once against the classes directory
+ * for the baseline and once against the multi-release jar:
+ * {@code mvn -Pbench test -Dbench.include=RecordProjectionJmhTest -Dmrjar.jdk=/path/to/jdk-21 [-Dbench.classes=target/classes]}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class RecordProjectionJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(RecordProjectionJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .shouldDoGC(true)
+                .addProfiler("gc")
+                .build();
+
+        new Runner(options).run();
+    }
+
+    static final Jackson5 jackson5 = Jackson5.get();
+
+    @Param({ "100" })
+    public int size;
+
+    @Param({ "record", "bean" })
+    public String model;
+
+    @Param({ "id firstName", "id lastName purchases{ amount }" })
+    public String include;
+
+    List<?> people;
+    IFields fields;
+
+    @Setup
+    public void setup() throws ReflectiveOperationException {
+        TestUtils.random.setSeed(size);
+        List<Person> people = TestUtils.randomPeople(size);
+        this.people = model.equals("bean")
+                ? people
+                : (List<?>) Class.forName("io.oreto.jackson.records.PersonRecord")
+                        .getMethod("of", List.class)
+                        .invoke(null, people);
+        fields = Fields.Include(include);
+    }
+
+    @Benchmark
+    public JsonNode project() throws JsonProcessingException {
+        return jackson5.json(people, fields);
+    }
+}
@@ -0,0 +1,177 @@
+package io.oreto.jackson;
+
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.pojos.PojoDate;
+import io.oreto.jackson.util.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * Runs the public API from many threads at once and checks every result against a single threaded oracle.
+ * The caches are cleared before each concurrent round so threads race to populate them.
+ * Throughput for each thread count is printed as the scaling curve.
+ */
+public class StressTest {
+    static final int TASKS = 400;
+    static final int[] THREADS = { 1, 2, 4, 8 };
+
+    static final Random random = new Random(37);
+    static final List<List<Person>> payloads = IntStream.range(0, 12)
+            .mapToObj(i -> people(random.nextInt(4)))
+            .collect(Collectors.toList());
+    static final List<IFields> dsls = IntStream.range(0, 40)
+            .mapToObj(i -> dsl())
+            .collect(Collectors.toList());
+
+    static List<Person> people(int n) {
+        List<Person> people = TestUtils.randomPeople(n);
+        // keep the arrays small but of random sizes
+        for (Person person : people) {
+            person.setPurchases(new ArrayList<>(person.getPurchases().subList(0
+                    , Math.min(person.getPurchases().size(), random.nextInt(6)))));
+            person.getPurchases().forEach(purchase -> purchase.setItems(new ArrayList<>(purchase.getItems()
+                    .subList(0, Math.min(purchase.getItems().size(), random.nextInt(8))))));
+        }
+        return people;
+    }
+
+    static String slice() {
+        switch (random.nextInt(4)) {
+            case 0: return String.format("[%d]", random.nextInt(3));
+            case 1: return String.format("[-%d]", 1 + random.nextInt(2));
+            case 2: return String.format("[%d:%d]", random.nextInt(2), 1 + random.nextInt(4));
+            default: return String.format("[%d:]", random.nextInt(3));
+        }
+    }
+
+    static IFields dsl() {
+        List<String> fragments = Arrays.asList("id", "firstName", "lastName"
+                , "account{ username logins" + slice() + " }"
+                , "primaryAddress{ city zip }"
+                , "addresses" + slice()
+                , "purchases" + slice() + "{ amount items" + slice() + "{ name } }"
+                , "purchases{ id items{ price } }"
+                , "vehicles" + slice());
+        List<String> picked = new ArrayList<>(fragments);
+        Collections.shuffle(picked, random);
+        String include = String.join(" ", picked.subList(0, 1 + random.nextInt(4)));
+        String exclude = String.join(" ", picked.subList(4, 5 + random.nextInt(3)));
+        switch (random.nextInt(4)) {
+            case 0: return Fields.Include(include);
+            case 1: return Fields.Exclude(exclude);
+            case 2: return Fields.Include(include).exclude(exclude);
+            default: return Fields.Root("purchases" + slice()).include("amount items" + slice());
+        }
+    }
+
+    /**
+     * Render task i, recording an exception as its result so failures are compared too
+     */
+    static String render(int i) {
+        try {
+            return Jackson5.get().serialize(payloads.get(i % payloads.size()), dsls.get(i % dsls.size()));
+        } catch (Exception e) {
+            return e.getClass().getName();
+        }
+    }
+
+    /**
+     * Run the tasks on each thread count, check them against the oracle and print the throughput
+     * @param name Name of the scenario
+     * @param task The task to run for each index
+     */
+    static void stress(String name, IntFunction<String> task) throws Exception {
+        List<String> oracle = IntStream.range(0, TASKS).mapToObj(task).collect(Collectors.toList());
+        for (int threads : THREADS) {
+            FieldsDSL.clearCaches();
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            try {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < TASKS; i++) {
+                    int index = i;
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return task.apply(index);
+                    }));
+                }
+                long begin = System.nanoTime();
+                start.countDown();
+                for (int i = 0; i < TASKS; i++)
+                    assertEquals(oracle.get(i), results.get(i).get(), String.format("%s task %d on %d threads", name, i, threads));
+                double seconds = (System.nanoTime() - begin) / 1e9;
+                System.out.printf("%s: %d threads %.0f ops/s%n", name, threads, TASKS / seconds);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void render() throws Exception {
+        stress("render", StressTest::render);
+    }
+
+    @Test
+    public void csv() throws Exception {
+        stress("csv", i -> {
+            try {
+                List<Person> people = payloads.get(i % payloads.size());
+                return Csv.toCsv(people, Csv.Options.header().exclude("addresses", "purchases"));
+            } catch (Exception e) {
+                return e.getClass().getName();
+            }
+        });
+    }
+
+    @Test
+    public void dates() throws Exception {
+        List<PojoDate> dates = IntStream.range(0, 50).mapToObj(i -> {
+            PojoDate pojoDate = new PojoDate();
+            pojoDate.setDate(new Date(random.nextInt(Integer.MAX_VALUE) * 1000L));
+            pojoDate.setSqlDate(new java.sql.Date(random.nextInt(Integer.MAX_VALUE) * 1000L));
+            return pojoDate;
+        }).collect(Collectors.toList());
+        stress("dates", i -> {
+            try {
+                Jackson5 jackson5 = Jackson5.get();
+                String json = jackson5.serialize(dates.get(i % dates.size()));
+                return jackson5.serialize(jackson5.deserialize(json, PojoDate.class));
+            } catch (Exception e) {
+                return e.getClass().getName();
+            }
+        });
+    }
+
+    @Test
+    public void registry() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Jackson5>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int index = i;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    Jackson5.supply("stress" + index % 10, MapperConfig.defaultConfig());
+                    Jackson5.getOrThrow("stress" + index % 10);
+                    return Jackson5.get();
+                }));
+            }
+            start.countDown();
+            Jackson5 jackson5 = Jackson5.get();
+            for (Future<Jackson5> result : results)
+                assertSame(jackson5, result.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
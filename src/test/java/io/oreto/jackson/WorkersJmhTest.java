@@ -0,0 +1,69 @@
+package io.oreto.jackson;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a worker pool made for one call, as the parallel readers and writers do: start it, run small tasks
+ * on it and shut it down. The Java 21 classes use virtual threads, which are cheap to start.
+ * Run once against the classes directory for the baseline and once against the multi-release jar on JDK 21:
+ * {@code mvn -Pbench test -Dbench.include=WorkersJmhTest -Dmrjar.jdk=/path/to/jdk-21 [-Dbench.classes=target/classes]}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class WorkersJmhTest {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(WorkersJmhTest.class.getName() + ".*")
+                .warmupTime(TimeValue.seconds(1))
+                .warmupIterations(2)
+                .threads(1)
+                .measurementIterations(3)
+                .forks(1)
+                .shouldFailOnError(true)
+                .build();
+
+        new Runner(options).run();
+    }
+
+    @Param({ "1", "4", "16" })
+    public int threads;
+
+    @Param({ "64" })
+    public int tasks;
+
+    @Benchmark
+    public long pool() throws InterruptedException, ExecutionException {
+        ExecutorService pool = Workers.pool("jackson5-bench", threads);
+        try {
+            List<Future<Long>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                long seed = i;
+                futures.add(pool.submit(() -> {
+                    long sum = seed;
+                    for (int j = 0; j < 1000; j++)
+                        sum = sum * 31 + j;
+                    return sum;
+                }));
+            }
+            long sum = 0;
+            for (Future<Long> future : futures)
+                sum += future.get();
+            return sum;
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package io.oreto.jackson.pojos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+public class PojoHook {
+    private int id;
+    @JsonIgnore
+    private Runnable hook;
+
+    public PojoHook() {}
+
+    public PojoHook(int id, Runnable hook) {
+        this.id = id;
+        this.hook = hook;
+    }
+
+    public int getId() {
+        // runs each time the id is read, so a test can see how far a render got
+        hook.run();
+        return id;
+    }
+    public void setId(int id) {
+        this.id = id;
+    }
+}
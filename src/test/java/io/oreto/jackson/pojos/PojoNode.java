@@ -0,0 +1,41 @@
+package io.oreto.jackson.pojos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class PojoNode {
+    private String name;
+    private PojoNode parent;
+    private List<PojoNode> children = new ArrayList<>();
+
+    public PojoNode() {}
+
+    public PojoNode(String name) {
+        this.name = name;
+    }
+
+    public PojoNode add(PojoNode child) {
+        child.parent = this;
+        children.add(child);
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+    public void setName(String name) {
+        this.name = name;
+    }
+    public PojoNode getParent() {
+        return parent;
+    }
+    public void setParent(PojoNode parent) {
+        this.parent = parent;
+    }
+    public List<PojoNode> getChildren() {
+        return children;
+    }
+    public void setChildren(List<PojoNode> children) {
+        this.children = children;
+    }
+}
@@ -2,8 +2,15 @@ package io.oreto.jackson.util;
 
 import io.oreto.jackson.models.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Random;
@@ -91,6 +98,39 @@ public class TestUtils {
         return IntStream.range(0, n).mapToObj(i -> randomVehicle()).collect(Collectors.toList());
     }
 
+    /**
+     * Write a csv file shaped like biostats.csv. Some names are quoted and contain commas and newlines.
+     * @param path The file to write
+     * @param rows The number of rows
+     */
+    public static void biostats(Path path, int rows) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            writer.write("\"Name\",     \"Sex\", \"Age\", \"Height (in)\", \"Weight (lbs)\"\n");
+            for (int i = 0; i < rows; i++) {
+                String name = i % 7 == 0 ? randomString(6) + ", " + randomString(4) + "\n" + i : randomString(8) + i;
+                writer.write(String.format("\"%s\",       \"%s\",   %d,       %d,      %d\n"
+                        , name
+                        , random.nextBoolean() ? "M" : "F"
+                        , 20 + random.nextInt(50)
+                        , 60 + random.nextInt(20)
+                        , 100 + random.nextInt(120)));
+            }
+        }
+    }
+
+    /**
+     * Read the rest of a stream
+     * @param in The stream to read
+     * @return The bytes read
+     */
+    public static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+
     public static Account randomAccount() {
         return new Account()
                 .withUsername(randomString(10))
@@ -0,0 +1,66 @@
+package io.oreto.jackson;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.records.PersonRecord;
+import io.oreto.jackson.util.TestUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs with the mrjar profile, against the Java 17 classes of the multi-release jar
+ */
+public class RecordsTest {
+    static final List<Person> people = TestUtils.randomPeople(20);
+    static final Jackson5 jackson5 = Jackson5.get();
+
+    record Named(@JsonProperty("full_name") String name, @JsonIgnore String secret, int age) {}
+
+    /**
+     * Render the whole tree first, which never takes the record path
+     */
+    static JsonNode whole(Object o, IFields fields) throws JsonProcessingException {
+        return jackson5.json(jackson5.json(o), fields);
+    }
+
+    @Test
+    public void isRecord() {
+        assertTrue(Records.isRecord(PersonRecord.class));
+        assertFalse(Records.isRecord(Person.class));
+    }
+
+    @Test
+    public void projection() throws JsonProcessingException {
+        List<PersonRecord> records = PersonRecord.of(people);
+        for (IFields fields : new IFields[] {
+                Fields.Include("id firstName")
+                , Fields.Include("id purchases{ amount items[0:1]{ name } }")
+                , Fields.Include("firstName primaryAddress").exclude("primaryAddress.zip")
+                , Fields.Include("id nope")
+                , Fields.Include("first* id")
+                , Fields.Include("**.id") }) {
+            assertEquals(jackson5.json(people, fields), jackson5.json(records, fields), fields.include());
+            assertEquals(whole(records, fields), jackson5.json(records, fields), fields.include());
+            assertEquals(whole(records.get(0), fields), jackson5.json(records.get(0), fields), fields.include());
+        }
+    }
+
+    @Test
+    public void annotations() throws JsonProcessingException {
+        Named named = new Named("Ross", "hidden", 40);
+        for (IFields fields : new IFields[] {
+                Fields.Include("full_name")
+                , Fields.Include("full_name age")
+                , Fields.Include("secret age")
+                , Fields.Include("name") }) {
+            assertEquals(whole(named, fields), jackson5.json(named, fields), fields.include());
+        }
+        assertEquals("{\"full_name\":\"Ross\"}", jackson5.serialize(named, Fields.Include("full_name")));
+    }
+}
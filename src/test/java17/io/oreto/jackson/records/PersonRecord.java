@@ -0,0 +1,35 @@
+package io.oreto.jackson.records;
+
+import io.oreto.jackson.models.Account;
+import io.oreto.jackson.models.Address;
+import io.oreto.jackson.models.Person;
+import io.oreto.jackson.models.Purchase;
+import io.oreto.jackson.models.Vehicle;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+public record PersonRecord(Long id
+        , String firstName
+        , String lastName
+        , List<Address> addresses
+        , Address primaryAddress
+        , List<Vehicle> vehicles
+        , List<Purchase> purchases
+        , Account account) {
+
+    public static PersonRecord of(Person person) {
+        return new PersonRecord(person.getId()
+                , person.getFirstName()
+                , person.getLastName()
+                , person.getAddresses()
+                , person.getPrimaryAddress()
+                , person.getVehicles()
+                , person.getPurchases()
+                , person.getAccount());
+    }
+
+    public static List<PersonRecord> of(List<Person> people) {
+        return people.stream().map(PersonRecord::of).collect(Collectors.toList());
+    }
+}